@@ -0,0 +1,202 @@
+package org.zson;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 属性读写,int/long/double/boolean不装箱
+ *
+ * @author zhou
+ *
+ */
+abstract class Accessor{
+  static final int OBJECT = 0;
+  static final int INT = 1;
+  static final int LONG = 2;
+  static final int DOUBLE = 3;
+  static final int BOOLEAN = 4;
+
+  static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  final int kind;
+
+  Accessor(Class<?> type){
+    this.kind = kindOf(type);
+  }
+
+  /**
+   * 读取属性值,field需已可访问
+   *
+   * @param field
+   * @return
+   * @throws IllegalAccessException
+   */
+  static Accessor getter(Field field) throws IllegalAccessException{
+    return new HandleAccessor(LOOKUP.unreflectGetter(field), field.getType(), true);
+  }
+
+  /**
+   * 调用setter写入属性值
+   *
+   * @param method
+   * @return
+   * @throws IllegalAccessException
+   */
+  static Accessor setter(Method method) throws IllegalAccessException{
+    // setter总是public,只有所在类不是public时才需要修改访问权限
+    if(!Modifier.isPublic(method.getDeclaringClass().getModifiers())){
+      try{
+        method.setAccessible(true);
+      }catch(RuntimeException e){
+        // 无法修改访问权限时按原权限访问
+      }
+    }
+
+    return new HandleAccessor(LOOKUP.unreflect(method), method.getParameterTypes()[0], false);
+  }
+
+  static int kindOf(Class<?> type){
+    if(type == int.class) return INT;
+    if(type == long.class) return LONG;
+    if(type == double.class) return DOUBLE;
+    if(type == boolean.class) return BOOLEAN;
+
+    return OBJECT;
+  }
+
+  abstract Object get(Object bean);
+
+  abstract int getInt(Object bean);
+
+  abstract long getLong(Object bean);
+
+  abstract double getDouble(Object bean);
+
+  abstract boolean getBoolean(Object bean);
+
+  abstract void set(Object bean, Object value);
+
+  abstract void setInt(Object bean, int value);
+
+  abstract void setLong(Object bean, long value);
+
+  abstract void setDouble(Object bean, double value);
+
+  abstract void setBoolean(Object bean, boolean value);
+
+  static RuntimeException rethrow(Throwable e){
+    if(e instanceof RuntimeException) return (RuntimeException) e;
+    if(e instanceof Error) throw (Error) e;
+
+    return new RuntimeException(e);
+  }
+
+  /**
+   * 基于MethodHandle的读写
+   */
+  private static final class HandleAccessor extends Accessor{
+    // getter:(Object)Object setter:(Object,Object)void
+    private final MethodHandle objectHandle;
+    // 基本类型时参数/返回值为基本类型
+    private final MethodHandle primitiveHandle;
+
+    HandleAccessor(MethodHandle handle, Class<?> type, boolean getter){
+      super(type);
+      if(getter){
+        this.objectHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+        this.primitiveHandle = kind == OBJECT ? null : handle.asType(MethodType.methodType(type,
+            Object.class));
+      }else{
+        this.objectHandle = handle.asType(MethodType.methodType(void.class, Object.class,
+            Object.class));
+        this.primitiveHandle = kind == OBJECT ? null : handle.asType(MethodType.methodType(
+            void.class, Object.class, type));
+      }
+    }
+
+    Object get(Object bean){
+      try{
+        return (Object) objectHandle.invokeExact(bean);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    int getInt(Object bean){
+      try{
+        return (int) primitiveHandle.invokeExact(bean);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    long getLong(Object bean){
+      try{
+        return (long) primitiveHandle.invokeExact(bean);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    double getDouble(Object bean){
+      try{
+        return (double) primitiveHandle.invokeExact(bean);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    boolean getBoolean(Object bean){
+      try{
+        return (boolean) primitiveHandle.invokeExact(bean);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    void set(Object bean, Object value){
+      try{
+        objectHandle.invokeExact(bean, value);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    void setInt(Object bean, int value){
+      try{
+        primitiveHandle.invokeExact(bean, value);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    void setLong(Object bean, long value){
+      try{
+        primitiveHandle.invokeExact(bean, value);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    void setDouble(Object bean, double value){
+      try{
+        primitiveHandle.invokeExact(bean, value);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+
+    void setBoolean(Object bean, boolean value){
+      try{
+        primitiveHandle.invokeExact(bean, value);
+      }catch(Throwable e){
+        throw rethrow(e);
+      }
+    }
+  }
+
+}
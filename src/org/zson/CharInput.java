@@ -0,0 +1,110 @@
+package org.zson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 通过固定大小的字符缓冲区读取Reader
+ *
+ * @author zhou
+ *
+ */
+final class CharInput extends JsonInput{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+  // 已从缓冲区中丢弃的字符数
+  private long discarded;
+
+  CharInput(Reader reader){
+    this.reader = reader;
+  }
+
+  int peek() throws IOException{
+    while(position < limit || loadMore()){
+      char c = buffer[position];
+      if(c > ' ') return c;
+
+      position++;
+    }
+
+    return -1;
+  }
+
+  void skip(){
+    position++;
+  }
+
+  void readString(char quote) throws IOException{
+    textLength = 0;
+    while(true){
+      if(position >= limit && !loadMore()) throw error("unterminated string");
+
+      int start = position;
+      while(position < limit){
+        char c = buffer[position];
+        if(c == quote || c == '\\') break;
+        position++;
+      }
+      appendText(buffer, start, position - start);
+      if(position == limit) continue;
+
+      if(buffer[position++] == quote) return;
+
+      if(position >= limit && !loadMore()) throw error("unterminated string");
+      unescape(buffer[position++]);
+    }
+  }
+
+  void skipString(char quote) throws IOException{
+    while(position < limit || loadMore()){
+      char c = buffer[position++];
+      if(c == quote) return;
+      if(c == '\\' && position >= limit && !loadMore()) break;
+      if(c == '\\') position++;
+    }
+
+    throw error("unterminated string");
+  }
+
+  void readLiteral() throws IOException{
+    textLength = 0;
+    while(position < limit || loadMore()){
+      char c = buffer[position];
+      if(isDelimiter(c)) break;
+
+      appendText(c);
+      position++;
+    }
+  }
+
+  int nextChar() throws IOException{
+    if(position >= limit && !loadMore()) throw error("unterminated string");
+
+    return buffer[position++];
+  }
+
+  long position(){
+    return discarded + position;
+  }
+
+  public void close() throws IOException{
+    reader.close();
+  }
+
+  private boolean loadMore() throws IOException{
+    discarded += limit;
+    position = 0;
+    limit = 0;
+
+    int count = reader.read(buffer, 0, buffer.length);
+    if(count <= 0) return false;
+
+    limit = count;
+    return true;
+  }
+
+}
@@ -0,0 +1,262 @@
+package org.zson;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 运行时通过LambdaMetafactory为bean的getter/setter/构造方法生成类,
+ * 生成的类直接调用目标方法。非public或当前类加载器不可见的类无法生成,返回null
+ *
+ * @author zhou
+ *
+ */
+final class CodecGenerator{
+  // ZsonCodecProcessor编译期生成的codec
+  private static final ClassValue<JsonCodec<Object>> COMPILED_CODECS = new ClassValue<JsonCodec<Object>>(){
+    @SuppressWarnings("unchecked")
+    protected JsonCodec<Object> computeValue(Class<?> type){
+      if(!type.isAnnotationPresent(ZsonCodec.class)) return null;
+
+      try{
+        Class<?> codec = Class.forName(compiledName(type.getName()), true, type.getClassLoader());
+        return (JsonCodec<Object>) codec.getDeclaredConstructor().newInstance();
+      }catch(ClassNotFoundException e){
+        return null;
+      }catch(ReflectiveOperationException e){
+        throw new RuntimeException(e);
+      }
+    }
+  };
+
+  private CodecGenerator(){
+  }
+
+  /**
+   * 生成调用getter的读取器
+   *
+   * @param method
+   * @return 无法生成时返回null
+   */
+  static Accessor getter(Method method){
+    Class<?> type = method.getReturnType();
+    if(!canGenerate(method, type)) return null;
+
+    switch(Accessor.kindOf(type)){
+    case Accessor.INT:
+      return new GeneratedAccessor(type, generate(ToIntFunction.class, "applyAsInt",
+          MethodType.methodType(int.class, Object.class), method));
+    case Accessor.LONG:
+      return new GeneratedAccessor(type, generate(ToLongFunction.class, "applyAsLong",
+          MethodType.methodType(long.class, Object.class), method));
+    case Accessor.DOUBLE:
+      return new GeneratedAccessor(type, generate(ToDoubleFunction.class, "applyAsDouble",
+          MethodType.methodType(double.class, Object.class), method));
+    case Accessor.BOOLEAN:
+      return new GeneratedAccessor(type, generate(Predicate.class, "test",
+          MethodType.methodType(boolean.class, Object.class), method));
+    default:
+      return new GeneratedAccessor(type, generate(Function.class, "apply",
+          MethodType.methodType(Object.class, Object.class), method));
+    }
+  }
+
+  /**
+   * 生成调用setter的写入器
+   *
+   * @param method
+   * @return 无法生成时返回null
+   */
+  static Accessor setter(Method method){
+    Class<?> type = method.getParameterTypes()[0];
+    if(!canGenerate(method, type)) return null;
+
+    switch(Accessor.kindOf(type)){
+    case Accessor.INT:
+      return new GeneratedAccessor(type, generate(ObjIntConsumer.class, "accept",
+          MethodType.methodType(void.class, Object.class, int.class), method));
+    case Accessor.LONG:
+      return new GeneratedAccessor(type, generate(ObjLongConsumer.class, "accept",
+          MethodType.methodType(void.class, Object.class, long.class), method));
+    case Accessor.DOUBLE:
+      return new GeneratedAccessor(type, generate(ObjDoubleConsumer.class, "accept",
+          MethodType.methodType(void.class, Object.class, double.class), method));
+    case Accessor.BOOLEAN:
+      return new GeneratedAccessor(type, generate(BooleanSetter.class, "accept",
+          MethodType.methodType(void.class, Object.class, boolean.class), method));
+    default:
+      return new GeneratedAccessor(type, generate(BiConsumer.class, "accept",
+          MethodType.methodType(void.class, Object.class, Object.class), method));
+    }
+  }
+
+  /**
+   * 生成调用无参构造方法的工厂
+   *
+   * @param clazz
+   * @return 无法生成时返回null
+   */
+  @SuppressWarnings("unchecked")
+  static Supplier<Object> constructor(Class<?> clazz){
+    if(!Modifier.isPublic(clazz.getModifiers()) || Modifier.isAbstract(clazz.getModifiers())
+        || !isVisible(clazz)) return null;
+
+    try{
+      Constructor<?> constructor = clazz.getConstructor();
+      MethodHandle handle = Accessor.LOOKUP.unreflectConstructor(constructor);
+      CallSite site = LambdaMetafactory.metafactory(Accessor.LOOKUP, "get", MethodType
+          .methodType(Supplier.class), MethodType.methodType(Object.class), handle, MethodType
+          .methodType(clazz));
+      return (Supplier<Object>) site.getTarget().invoke();
+    }catch(Throwable e){
+      return null;
+    }
+  }
+
+  /**
+   * 编译期生成的codec类名
+   *
+   * @param binaryName 目标类的binary name
+   * @return
+   */
+  static String compiledName(String binaryName){
+    return binaryName.replace('$', '_') + "_ZsonCodec";
+  }
+
+  /**
+   * 查找ZsonCodecProcessor为目标类生成的codec
+   *
+   * @param clazz
+   * @return 未标注{@link ZsonCodec}或未生成时返回null
+   */
+  static JsonCodec<Object> compiled(Class<?> clazz){
+    return COMPILED_CODECS.get(clazz);
+  }
+
+  private static boolean canGenerate(Method method, Class<?> type){
+    Class<?> owner = method.getDeclaringClass();
+    return Modifier.isPublic(owner.getModifiers()) && Modifier.isPublic(method.getModifiers())
+        && !Modifier.isStatic(method.getModifiers()) && isVisible(owner) && isVisible(type);
+  }
+
+  /**
+   * 生成的类由本类的类加载器定义,只能引用该加载器可见的类
+   *
+   * @param type
+   * @return
+   */
+  private static boolean isVisible(Class<?> type){
+    while(type.isArray()){
+      type = type.getComponentType();
+    }
+    if(type.isPrimitive()) return true;
+
+    try{
+      return Class.forName(type.getName(), false, CodecGenerator.class.getClassLoader()) == type;
+    }catch(ClassNotFoundException e){
+      return false;
+    }
+  }
+
+  private static Object generate(Class<?> face, String name, MethodType samType, Method method){
+    try{
+      MethodHandle handle = Accessor.LOOKUP.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(Accessor.LOOKUP, name, MethodType
+          .methodType(face), samType, handle, instantiatedType(samType, handle.type()));
+      return site.getTarget().invoke();
+    }catch(Throwable e){
+      throw Accessor.rethrow(e);
+    }
+  }
+
+  /**
+   * 基本类型通过Object传递时使用包装类型
+   *
+   * @param samType
+   * @param type
+   * @return
+   */
+  private static MethodType instantiatedType(MethodType samType, MethodType type){
+    if(samType.returnType() == Object.class){
+      type = type.changeReturnType(MethodType.methodType(type.returnType()).wrap().returnType());
+    }
+    for(int i = 1; i < type.parameterCount(); i++){
+      if(samType.parameterType(i) == Object.class) type = type.changeParameterType(i, type.wrap()
+          .parameterType(i));
+    }
+
+    return type;
+  }
+
+  /**
+   * boolean参数的setter
+   */
+  static interface BooleanSetter{
+    void accept(Object bean, boolean value);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static final class GeneratedAccessor extends Accessor{
+    private final Object function;
+
+    GeneratedAccessor(Class<?> type, Object function){
+      super(type);
+      this.function = function;
+    }
+
+    Object get(Object bean){
+      return ((Function<Object, Object>) function).apply(bean);
+    }
+
+    int getInt(Object bean){
+      return ((ToIntFunction<Object>) function).applyAsInt(bean);
+    }
+
+    long getLong(Object bean){
+      return ((ToLongFunction<Object>) function).applyAsLong(bean);
+    }
+
+    double getDouble(Object bean){
+      return ((ToDoubleFunction<Object>) function).applyAsDouble(bean);
+    }
+
+    boolean getBoolean(Object bean){
+      return ((Predicate<Object>) function).test(bean);
+    }
+
+    void set(Object bean, Object value){
+      ((BiConsumer<Object, Object>) function).accept(bean, value);
+    }
+
+    void setInt(Object bean, int value){
+      ((ObjIntConsumer<Object>) function).accept(bean, value);
+    }
+
+    void setLong(Object bean, long value){
+      ((ObjLongConsumer<Object>) function).accept(bean, value);
+    }
+
+    void setDouble(Object bean, double value){
+      ((ObjDoubleConsumer<Object>) function).accept(bean, value);
+    }
+
+    void setBoolean(Object bean, boolean value){
+      ((BooleanSetter) function).accept(bean, value);
+    }
+  }
+
+}
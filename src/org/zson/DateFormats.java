@@ -0,0 +1,153 @@
+package org.zson;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 日期类型(Date、Instant、LocalDateTime、OffsetDateTime)与字符串/毫秒数之间的转换。
+ * 格式按pattern编译一次后缓存,DateTimeFormatter不可变,可在多线程间共享
+ *
+ * <pre>
+ * Date/LocalDateTime   按配置的pattern,Date使用系统默认时区
+ * Instant              ISO-8601,如2017-01-01T00:00:00Z
+ * OffsetDateTime       ISO-8601,如2017-01-01T08:00:00+08:00
+ * </pre>
+ *
+ * @author zhou
+ *
+ */
+final class DateFormats{
+  // pattern到编译后格式的缓存
+  private static final ConcurrentMap<String, DateTimeFormatter> FORMATTERS =
+      new ConcurrentHashMap<String, DateTimeFormatter>();
+
+  private DateFormats(){
+  }
+
+  static boolean isDate(Class<?> type){
+    return Date.class.isAssignableFrom(type) || type == Instant.class || type == LocalDateTime.class
+        || type == OffsetDateTime.class;
+  }
+
+  /**
+   * 解析时数字宽度不严格匹配,与SimpleDateFormat一致,yyyy-MM-dd可以解析2020-1-2
+   * 
+   * @param pattern
+   * @return
+   */
+  static DateTimeFormatter formatter(String pattern){
+    DateTimeFormatter formatter = FORMATTERS.get(pattern);
+    if(formatter == null){
+      formatter = new DateTimeFormatterBuilder().parseLenient().appendPattern(pattern)
+          .toFormatter();
+      FORMATTERS.putIfAbsent(pattern, formatter);
+    }
+
+    return formatter;
+  }
+
+  static String format(Object date, String pattern){
+    if(date instanceof Instant) return date.toString();
+    if(date instanceof OffsetDateTime) return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+        (OffsetDateTime) date);
+    if(date instanceof LocalDateTime) return formatter(pattern).format((LocalDateTime) date);
+
+    // java.sql.Date/Time不支持toInstant
+    Instant instant = Instant.ofEpochMilli(((Date) date).getTime());
+    return formatter(pattern).format(instant.atZone(ZoneId.systemDefault()));
+  }
+
+  /**
+   * 解析日期,pattern中没有时间时为当天0点,12小时制没有上下午标记时按上午,
+   * 没有时区时使用系统默认时区
+   *
+   * @param text
+   * @param pattern
+   * @param type
+   * @return
+   */
+  static Object parse(String text, String pattern, Class<?> type){
+    try{
+      if(type == Instant.class) return Instant.parse(text);
+      if(type == OffsetDateTime.class) return OffsetDateTime.parse(text);
+
+      TemporalAccessor parsed = formatter(pattern).parse(text);
+      if(type != LocalDateTime.class && parsed.isSupported(ChronoField.INSTANT_SECONDS)){
+        return Date.from(Instant.from(parsed));
+      }
+
+      LocalDate date = parsed.query(TemporalQueries.localDate());
+      if(date == null) throw new RuntimeException("can't parse date " + text + " with " + pattern);
+
+      LocalDateTime result = LocalDateTime.of(date, time(parsed, text, pattern));
+      if(type == LocalDateTime.class) return result;
+
+      ZoneId zone = parsed.query(TemporalQueries.zone());
+      return Date.from(result.atZone(zone == null ? ZoneId.systemDefault() : zone).toInstant());
+    }catch(DateTimeParseException e){
+      throw new RuntimeException("can't parse date " + text, e);
+    }
+  }
+
+  /**
+   * 解析结果中的时间。hh没有a时java.time不会合成时间,此时按上午计算;
+   * 有时间字段但无法组成时间时抛出异常,而不是当作0点
+   * 
+   * @param parsed
+   * @param text
+   * @param pattern
+   * @return
+   */
+  private static LocalTime time(TemporalAccessor parsed, String text, String pattern){
+    LocalTime time = parsed.query(TemporalQueries.localTime());
+    if(time != null) return time;
+
+    if(parsed.isSupported(ChronoField.HOUR_OF_AMPM)){
+      return LocalTime.of((int) parsed.getLong(ChronoField.HOUR_OF_AMPM), field(parsed,
+          ChronoField.MINUTE_OF_HOUR), field(parsed, ChronoField.SECOND_OF_MINUTE), field(parsed,
+          ChronoField.NANO_OF_SECOND));
+    }
+    if(parsed.isSupported(ChronoField.MINUTE_OF_HOUR) || parsed.isSupported(
+        ChronoField.SECOND_OF_MINUTE) || parsed.isSupported(ChronoField.AMPM_OF_DAY)){
+      throw new RuntimeException("can't parse time " + text + " with " + pattern);
+    }
+
+    return LocalTime.MIDNIGHT;
+  }
+
+  private static int field(TemporalAccessor parsed, ChronoField field){
+    return parsed.isSupported(field) ? (int) parsed.getLong(field) : 0;
+  }
+
+  static long toMillis(Object date){
+    if(date instanceof Instant) return ((Instant) date).toEpochMilli();
+    if(date instanceof OffsetDateTime) return ((OffsetDateTime) date).toInstant().toEpochMilli();
+    if(date instanceof LocalDateTime) return ((LocalDateTime) date).atZone(ZoneId.systemDefault())
+        .toInstant().toEpochMilli();
+
+    return ((Date) date).getTime();
+  }
+
+  static Object fromMillis(long millis, Class<?> type){
+    Instant instant = Instant.ofEpochMilli(millis);
+    if(type == Instant.class) return instant;
+    if(type == OffsetDateTime.class) return OffsetDateTime.ofInstant(instant, ZoneId.systemDefault());
+    if(type == LocalDateTime.class) return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+
+    return new Date(millis);
+  }
+
+}
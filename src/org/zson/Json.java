@@ -1,12 +1,17 @@
 package org.zson;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Json抽象类
+ * Json抽象类,子类可以通过覆盖getArray/getObject/getValue提供其他存储方式的节点
  * 
  * @author zhou
  *
@@ -32,24 +37,180 @@ public class Json{
   }
 
   public static Json from(String json, boolean unicode){
-    return json == null ? new Json()
-        : new JsonReader(unicode ? Unicoder.decode(json.trim()) : json).parse();
+    if(json == null) return new Json();
+
+    return from(new JsonParser(json, unicode));
+  }
+
+  /**
+   * 从Reader中流式解析,不需要先读入整个字符串
+   * 
+   * @param reader
+   * @return
+   * @throws IOException
+   */
+  public static Json from(Reader reader) throws IOException{
+    return new JsonReader(new JsonParser(reader)).parse();
+  }
+
+  /**
+   * 直接解析UTF-8字节,不需要先解码为字符串
+   * 
+   * @param json
+   * @param offset
+   * @param length
+   * @return
+   */
+  public static Json from(byte[] json, int offset, int length){
+    return from(new JsonParser(json, offset, length));
+  }
+
+  /**
+   * 解析ByteBuffer中剩余的UTF-8字节,不改变其position
+   * 
+   * @param json
+   * @return
+   */
+  public static Json from(ByteBuffer json){
+    return from(new JsonParser(json));
+  }
+
+  /**
+   * 以内存映射方式解析UTF-8文件,不需要将文件读入字符串
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  public static Json from(File file) throws IOException{
+    JsonParser parser = new JsonParser(file);
+    try{
+      return new JsonReader(parser).parse();
+    }finally{
+      parser.close();
+    }
+  }
+
+  /**
+   * 从parser的当前token开始读取一个完整的值
+   * 
+   * @param parser
+   * @param token
+   * @return
+   * @throws IOException
+   */
+  static Json read(JsonParser parser, JsonToken token) throws IOException{
+    return new JsonReader(parser).valueSegment(token);
+  }
+
+  private static Json from(JsonParser parser){
+    try{
+      return new JsonReader(parser).parse();
+    }catch(IOException e){
+      // 内存中的输入不会抛出IOException
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * 以UTF-8编码从输入流中解析
+   * 
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  public static Json from(InputStream in) throws IOException{
+    return new JsonReader(new JsonParser(in)).parse();
+  }
+
+  /**
+   * 按路径提取值,只为匹配的值创建Json。多次使用同一路径时应使用{@link JsonPath#compile(String)}
+   * 
+   * @param json
+   * @param path 如 data.items[*].id
+   * @return
+   */
+  public static List<Json> extract(String json, String path){
+    return JsonPath.compile(path).extract(json);
+  }
+
+  /**
+   * 延迟解析:只在访问时扫描对象/数组的本层并解析被访问的值,
+   * 适合只读取大文档中少量属性的场景。未访问的部分不做完整校验
+   * 
+   * @param json
+   * @return
+   */
+  public static Json lazy(String json){
+    if(json == null) return new Json();
+
+    return LazyJson.parse(json);
+  }
+
+  /**
+   * 解析为紧凑的只读文档:节点保存在连续的数组中,访问时才创建Json对象,
+   * 适合长期缓存的解析结果
+   * 
+   * @param json
+   * @return
+   */
+  public static Json compact(String json){
+    if(json == null) return new Json();
+
+    return compact(new JsonParser(json));
+  }
+
+  /**
+   * 将UTF-8字节解析为紧凑的只读文档
+   * 
+   * @param json
+   * @param offset
+   * @param length
+   * @return
+   * @see #compact(String)
+   */
+  public static Json compact(byte[] json, int offset, int length){
+    return compact(new JsonParser(json, offset, length));
+  }
+
+  /**
+   * 以UTF-8编码从输入流中解析为紧凑的只读文档
+   * 
+   * @param in
+   * @return
+   * @throws IOException
+   * @see #compact(String)
+   */
+  public static Json compact(InputStream in) throws IOException{
+    return JsonTape.parse(new JsonParser(in));
+  }
+
+  private static Json compact(JsonParser parser){
+    try{
+      return JsonTape.parse(parser);
+    }catch(IOException e){
+      // 内存中的输入不会抛出IOException
+      throw new RuntimeException(e);
+    }
   }
 
   public boolean isArray(){
+    List<Json> arrays = getArray();
     return arrays != null && !arrays.isEmpty();
   }
 
   public boolean isObject(){
+    Map<String, Json> obj = getObject();
     return obj != null && !obj.isEmpty();
   }
 
   public boolean isSimple(){
+    Object data = getValue();
     return data != null && data.toString().length() != 0;
   }
 
   public boolean isNull(){
-    return data == null;
+    return getValue() == null;
   }
 
   public boolean isEmpty(){
@@ -69,224 +230,93 @@ public class Json{
   }
 
   public String getDataAsString(){
-    return data.toString();
+    return getValue().toString();
   }
 
   public int getDataAsInteger(){
-    return Integer.parseInt(data.toString());
+    return Integer.parseInt(getDataAsString());
   }
 
   public boolean getDataAsBoolean(){
-    return Boolean.parseBoolean(data.toString());
+    return Boolean.parseBoolean(getDataAsString());
   }
 
   public long getDataAsLong(){
-    return Long.parseLong(data.toString());
+    return Long.parseLong(getDataAsString());
   }
 
   public float getDataAsFloat(){
-    return Float.parseFloat(data.toString());
+    return Float.parseFloat(getDataAsString());
   }
 
   public byte getDataAsByte(){
-    return Byte.parseByte(data.toString());
+    return Byte.parseByte(getDataAsString());
   }
 
   public double getDataAsDouble(){
-    return Double.parseDouble(data.toString());
+    return Double.parseDouble(getDataAsString());
   }
 
   public String toString(){
-    if(isArray()) return arrays.toString();
-    if(isObject()) return obj.toString();
-    if(isSimple()) return data.toString();
+    if(isArray()) return getArray().toString();
+    if(isObject()) return getObject().toString();
+    if(isSimple()) return getDataAsString();
 
     return null;
   }
 
+  /**
+   * 基于JsonParser构建Json树
+   */
   private static final class JsonReader{
-    final StringBuilder container = new StringBuilder();
-    final boolean esacpe = true;
-    int position = 0;
-    String source;
+    final JsonParser parser;
 
-    private JsonReader(String json){
-      this.source = json;
+    private JsonReader(JsonParser parser){
+      this.parser = parser;
     }
 
-    Json parse(){
-      skipBlank();
-
-      Json result = objectStart();
-      if(result == null) result = arrayStart();
-      if(result == null) result = valueSegment();
-
-      return result;
+    Json parse() throws IOException{
+      JsonToken token = parser.nextToken();
+      return token == null ? new Json() : valueSegment(token);
     }
 
-    Json objectStart(){
-      if(source.charAt(position) != '{') return null;
-
-      position++;
+    Json objectStart() throws IOException{
       Map<String, Json> map = new HashMap<String, Json>();
-      skipBlank();
-      if(source.charAt(position) == '}'){
-        position++;
-        return new Json(map);
+      while(parser.nextToken() == JsonToken.FIELD_NAME){
+        String field = parser.getText();
+        map.put(field, valueSegment(parser.nextToken()));
       }
 
-      while(true){
-        String field = keySegment();
-        if(field.length() == 0) break;
-
-        // 略过一个:和QUATO
-        position++;
-        skipBlank();
-        position++;
-
-        map.put(field, valueSegment());
-        skipBlank();
-        if(source.charAt(position) == '}') break;
-
-        // 略过','
-        position++;
-      }
-      // 略过"}"
-      position++;
       return new Json(map);
     }
 
-    Json arrayStart(){
-      if(source.charAt(position) != '[') return null;
-
-      position++;
+    Json arrayStart() throws IOException{
       List<Json> list = new ArrayList<Json>();
-      skipBlank();
-      if(source.charAt(position) == ']'){
-        position++;
-        return new Json(list);
+      JsonToken token;
+      while((token = parser.nextToken()) != JsonToken.END_ARRAY){
+        list.add(valueSegment(token));
       }
 
-      while(true){
-        Json node = valueSegment();
-        if(node.isEmpty()) break;
-
-        list.add(node);
-        skipBlank();
-        if(source.charAt(position) == ']') break;
-
-        // 略过','
-        position++;
-      }
-
-      // 略过']'
-      position++;
       return new Json(list);
     }
 
-    private String keySegment(){
-      skipBlank();
-      // 略过双引号
-      char quato = source.charAt(position++);
-      for(; position < source.length(); position++){
-        char temp = source.charAt(position);
-        if(temp < 32) continue;
-        if(temp == '\\' && esacpe && position + 1 < source.length()){
-          container.append(source.charAt(++position));
-          continue;
-        }
-        if(temp == quato || temp == '}') break;
-
-        container.append(temp);
-      }
-
-      return getContent();
-    }
-
-    Json valueSegment(){
-      skipBlank();
-
-      char temp = source.charAt(position);
-      Json json = null;
-      switch(temp){
-      case '{':
-        json = objectStart();
-        break;
-      case '[':
-        json = arrayStart();
-        break;
-      case '\'':
-      case '"':
-        json = stringStart(temp);
-        break;
+    Json valueSegment(JsonToken token) throws IOException{
+      switch(token){
+      case START_OBJECT:
+        return objectStart();
+      case START_ARRAY:
+        return arrayStart();
+      case VALUE_STRING:
+        return new Json(parser.getText());
+      case VALUE_NUMBER:
+        return new Json(parser.getNumberValue());
+      case VALUE_TRUE:
+        return new Json(Boolean.TRUE);
+      case VALUE_FALSE:
+        return new Json(Boolean.FALSE);
       default:
-        json = boolnumStart();
-        break;
+        return new Json((Object) null);
       }
-
-      return json;
-    }
-
-    Json stringStart(char quato){
-      position++;
-      for(; position < source.length(); position++){
-        char newTemp = source.charAt(position);
-        if(newTemp == '\\' && esacpe){
-          if(position + 1 < source.length()) container.append(source.charAt(++position));
-          continue;
-        }
-        if(newTemp == quato){
-          position++;
-          break;
-        }
-
-        container.append(newTemp);
-      }
-
-      return new Json(getContent());
-    }
-
-    Json boolnumStart(){
-      for(; position < source.length(); position++){
-        char temp = source.charAt(position);
-        if(temp < 32) continue;
-        if(temp == '\\' && esacpe){
-          if(position + 1 < source.length()) container.append(source.charAt(++position));
-          continue;
-        }
-        if(temp == ',' || temp == '}' || temp == ']'){
-          break;
-        }
-
-        container.append(temp);
-      }
-
-      Object data = null;
-      String value = getContent();
-      if(value.matches("^-?[1-9]\\d*|0$")) data = Long.parseLong(value);
-      else if(value.matches("^[1-9]\\d*\\.\\d*|0\\.\\d*|0$")) data = Double.parseDouble(value);
-      else if("true".equals(value) || "false".equals(value)) data = Boolean.parseBoolean(value);
-      else if("null".equals(value)) data = null;
-      else
-        throw new RuntimeException("parse json error near " + value + " at " + source);
-
-      return new Json(data);
-    }
-
-    /**
-     * 略过空白字符
-     */
-    private void skipBlank(){
-      for(; position < source.length(); position++){
-        if(source.charAt(position) > 32) break;
-      }
-    }
-
-    private String getContent(){
-      String result = container.toString();
-      container.delete(0, container.length());
-      if(result.length() == 0) result = null;
-      return result;
     }
 
   }
@@ -0,0 +1,63 @@
+package org.zson;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * 编译期为标注了{@link ZsonCodec}的类生成的序列化/反序列化代码
+ *
+ * @author zhou
+ *
+ * @param <T>
+ */
+public interface JsonCodec<T>{
+
+  /**
+   * 按属性顺序写入所有属性(包括父类属性)
+   *
+   * @param obj
+   * @param out
+   * @throws IOException
+   */
+  void writeProperties(T obj, PropertyWriter out) throws IOException;
+
+  T newInstance();
+
+  /**
+   * 读取属性值并写入obj
+   *
+   * @param obj
+   * @param name
+   * @param in
+   * @return 没有该属性时返回false
+   * @throws IOException
+   */
+  boolean readProperty(T obj, String name, PropertyReader in) throws IOException;
+
+  static interface PropertyWriter{
+    void writeInt(String name, int value) throws IOException;
+
+    void writeLong(String name, long value) throws IOException;
+
+    void writeDouble(String name, double value) throws IOException;
+
+    void writeBoolean(String name, boolean value) throws IOException;
+
+    void writeObject(String name, Object value) throws IOException;
+  }
+
+  static interface PropertyReader{
+    boolean isNull() throws IOException;
+
+    int readInt() throws IOException;
+
+    long readLong() throws IOException;
+
+    double readDouble() throws IOException;
+
+    boolean readBoolean() throws IOException;
+
+    Object read(Type type) throws IOException;
+  }
+
+}
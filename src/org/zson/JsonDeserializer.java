@@ -1,28 +1,30 @@
 package org.zson;
 
+import java.beans.IntrospectionException;
 import java.beans.Introspector;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * josn反序列化工具
@@ -36,6 +38,20 @@ public final class JsonDeserializer{
   private String dateFormat = "yyyy-MM-dd HH:mm:ss";
   private boolean unicode = false;
 
+  private boolean generateCodec = false;
+  private boolean parallel = false;
+
+  private static final ClassValue<BeanBinding> BEAN_BINDINGS = new BeanBindingValue(false);
+  private static final ClassValue<BeanBinding> GENERATED_BINDINGS = new BeanBindingValue(true);
+
+  // canDeserialize只与类型有关,且各实例的deserializers顺序相同,用一个实例计算下标
+  private static final List<Deserializer> DISPATCH_ORDER = new JsonDeserializer().deserializers;
+  private static final ClassValue<TypeInfo> TYPES = new ClassValue<TypeInfo>(){
+    protected TypeInfo computeValue(Class<?> type){
+      return new TypeInfo(type);
+    }
+  };
+
   public JsonDeserializer(){
     this.deserializers.add(new PrimitiveDeserializer());
     this.deserializers.add(new CharSequenceDeserializer());
@@ -47,13 +63,42 @@ public final class JsonDeserializer{
     this.deserializers.add(new ObjectDeserializer());
   }
 
+  /**
+   * 设定Date和LocalDateTime的格式,pattern语法同DateTimeFormatter。数字总是按毫秒数读取
+   * 
+   * @param pattern
+   * @return
+   */
   public JsonDeserializer dateFormat(String pattern){
     this.dateFormat = pattern;
     return this;
   }
 
   /**
-   * 是否使用unicode解码源字符串,默认不启用
+   * 是否在运行时为bean生成直接调用构造方法和setter的代码(默认不生成),无法生成时使用反射
+   * 
+   * @param generate
+   * @return
+   */
+  public JsonDeserializer generateCodec(boolean generate){
+    this.generateCodec = generate;
+    return this;
+  }
+
+  /**
+   * 源字符串为较大的顶层数组时,是否在ForkJoinPool中分段并行解析各元素(默认不启用),结果保持原顺序。
+   * 目标类型为数组或Collection时有效
+   * 
+   * @param parallel
+   * @return
+   */
+  public JsonDeserializer parallel(boolean parallel){
+    this.parallel = parallel;
+    return this;
+  }
+
+  /**
+   * 是否解码源字符串中的unicode转义,默认不启用(从文件读取时总是解码)
    * 
    * @param unicode
    * @return
@@ -64,29 +109,175 @@ public final class JsonDeserializer{
   }
 
   private Deserializer findDeserializer(Class<?> clazz){
-    for(Deserializer desc : deserializers){
-      if(desc.canDeserialize(clazz)){
-        return desc;
-      }
-    }
-
-    return null;
+    int index = TYPES.get(clazz).deserializer;
+    return index < 0 ? null : deserializers.get(index);
   }
 
   public <T> T deserialize(String source, Class<T> clazz){
-    Json json = Json.from(source, unicode);
-    return new ObjectDeserializer().jsonToObject(json, clazz);
+    return (T) read(source, clazz);
   }
 
   public Object deserialize(String source, Type type){
-    Json json = Json.from(source, unicode);
     ParameterizedType pt = (ParameterizedType) type;
-    return new ObjectDeserializer().jsonToObject(json, pt.getActualTypeArguments()[0]);
+    return read(source, pt.getActualTypeArguments()[0]);
   }
 
   public Object deserialize(String source){
-    Json json = Json.from(source, unicode);
-    return new ObjectDeserializer().jsonToObject(json);
+    return read(source, null);
+  }
+
+  /**
+   * 以内存映射方式读取UTF-8文件并反序列化
+   * 
+   * @param source
+   * @param clazz
+   * @return
+   * @throws IOException
+   */
+  public <T> T deserialize(File source, Class<T> clazz) throws IOException{
+    return (T) read(new JsonParser(source), clazz);
+  }
+
+  public Object deserialize(File source, Type type) throws IOException{
+    ParameterizedType pt = (ParameterizedType) type;
+    return read(new JsonParser(source), pt.getActualTypeArguments()[0]);
+  }
+
+  private Object read(String source, Type type){
+    if(source == null) return null;
+
+    try{
+      if(parallel && ParallelArrayReader.supports(source, type)){
+        return new ParallelArrayReader(this, source, unicode, type).read();
+      }
+
+      return read(new JsonParser(source, unicode), type);
+    }catch(IOException e){
+      // 内存中的输入不会抛出IOException
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * 按目标类型直接从token创建对象,不生成中间的Json树
+   * 
+   * @param parser
+   * @param type 为null时按json结构生成Map/List/简单值
+   * @return
+   * @throws IOException
+   */
+  private Object read(JsonParser parser, Type type) throws IOException{
+    try{
+      return readValue(parser, parser.nextToken(), type);
+    }finally{
+      parser.close();
+    }
+  }
+
+  /**
+   * 从token开始读取一个值,返回时parser停在该值的最后一个token上
+   * 
+   * @param parser
+   * @param token
+   * @param type 为null时按json结构生成Map/List/简单值
+   * @return
+   * @throws IOException
+   */
+  Object readValue(JsonParser parser, JsonToken token, Type type) throws IOException{
+    ObjectDeserializer deserializer = new ObjectDeserializer();
+    return type == null ? deserializer.tokenToObject(parser, token) : deserializer.tokenToObject(
+        parser, token, type);
+  }
+
+  /**
+   * 逐个读取JSON Lines中的对象
+   * 
+   * @param reader
+   * @param clazz
+   * @return
+   */
+  public <T> JsonLineReader<T> lines(Reader reader, Class<T> clazz){
+    return new JsonLineReader<T>(this, new JsonParser(reader), clazz);
+  }
+
+  /**
+   * 以UTF-8编码逐个读取JSON Lines中的对象
+   * 
+   * @param in
+   * @param clazz
+   * @return
+   */
+  public <T> JsonLineReader<T> lines(InputStream in, Class<T> clazz){
+    return new JsonLineReader<T>(this, new JsonParser(in), clazz);
+  }
+
+  /**
+   * null、对象和数组不能写入基本类型属性
+   * 
+   * @param token
+   * @return
+   */
+  private static boolean isNull(JsonToken token){
+    return token == null || token == JsonToken.VALUE_NULL || token == JsonToken.START_OBJECT
+        || token == JsonToken.START_ARRAY;
+  }
+
+  private static boolean booleanValue(JsonParser parser) throws IOException{
+    JsonToken token = parser.getCurrentToken();
+    if(token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE){
+      return token == JsonToken.VALUE_TRUE;
+    }
+
+    return Boolean.parseBoolean(parser.getText());
+  }
+
+  /**
+   * 类型对应的反序列化器下标,枚举类型同时保存名称到常量的映射
+   */
+  private static final class TypeInfo{
+    final int deserializer;
+    final Map<String, Object> constants;
+
+    TypeInfo(Class<?> type){
+      int index = -1;
+      for(int i = 0; i < DISPATCH_ORDER.size(); i++){
+        if(DISPATCH_ORDER.get(i).canDeserialize(type)){
+          index = i;
+          break;
+        }
+      }
+      this.deserializer = index;
+
+      if(type.isEnum()){
+        this.constants = new HashMap<String, Object>();
+        for(Object constant : type.getEnumConstants()){
+          if(!constants.containsKey(constant.toString())) constants.put(constant.toString(), constant);
+        }
+      }else{
+        this.constants = null;
+      }
+    }
+  }
+
+  /**
+   * 接口类型使用TreeSet/HashSet/LinkedList,无法实例化时使用LinkedList
+   * 
+   * @param rawClass
+   * @return
+   */
+  static Collection<Object> newCollection(Class<?> rawClass){
+    if(rawClass.isInterface()){
+      if(hasInterface(rawClass, SortedSet.class)) return new TreeSet<Object>();
+      if(hasInterface(rawClass, Set.class)) return new HashSet<Object>();
+
+      return new LinkedList<Object>();
+    }
+
+    try{
+      return (Collection<Object>) rawClass.newInstance();
+    }catch(Exception e){
+      return new LinkedList<Object>();
+    }
   }
 
   private static boolean hasSuper(Class<?> clazz, Class<?> suprz){
@@ -101,37 +292,152 @@ public final class JsonDeserializer{
   }
 
   static boolean hasInterface(Class<?> clazz, Class<?> face){
-    if(clazz == face) return true;
-
-    Queue<Class<?>> queue = new ArrayDeque<Class<?>>();
-    Class<?> tempClass = clazz;
-    do{
-      for(Class<?> temp : tempClass.getInterfaces()){
-        if(temp == face) return true;
-        queue.offer(temp);
-      }
+    return face.isAssignableFrom(clazz);
+  }
+
+  /**
+   * 类的构造方式及属性名到可写属性的映射
+   */
+  private static final class BeanBinding{
+    final Map<String, PropertyBinding> properties = new HashMap<String, PropertyBinding>();
+    // 为null时通过反射创建
+    final Supplier<Object> factory;
 
-      while(!queue.isEmpty()){
-        Class<?> first = queue.remove();
-        for(Class<?> temp : first.getInterfaces()){
-          if(temp == face) return true;
-          queue.add(temp);
+    BeanBinding(Class<?> type, boolean generate){
+      this.factory = generate ? CodecGenerator.constructor(type) : null;
+      try{
+        for(PropertyDescriptor pd : Introspector.getBeanInfo(type, Introspector.USE_ALL_BEANINFO)
+            .getPropertyDescriptors()){
+          if(pd.getWriteMethod() != null) properties.put(pd.getName(), new PropertyBinding(pd,
+              generate));
         }
+      }catch(IntrospectionException e){
+        throw new RuntimeException("can't introspect " + type, e);
+      }catch(IllegalAccessException e){
+        throw new RuntimeException("can't access setter of " + type, e);
       }
-      tempClass = tempClass.getSuperclass();
-    }while(tempClass != Object.class && tempClass != null);
+    }
 
-    return false;
+    Object newInstance(Class<?> clazz) throws InstantiationException, IllegalAccessException{
+      return factory != null ? factory.get() : clazz.newInstance();
+    }
+  }
+
+  private static final class BeanBindingValue extends ClassValue<BeanBinding>{
+    private final boolean generate;
+
+    BeanBindingValue(boolean generate){
+      this.generate = generate;
+    }
+
+    protected BeanBinding computeValue(Class<?> type){
+      return new BeanBinding(type, generate);
+    }
+  }
+
+  /**
+   * 可写属性,type为setter参数的泛型类型(非ParameterizedType时为属性类型)
+   */
+  private static final class PropertyBinding{
+    final Accessor write;
+    final Type type;
+    // 基本类型属性遇到null及对象/数组时保留默认值
+    final boolean primitive;
+
+    PropertyBinding(PropertyDescriptor pd, boolean generate) throws IllegalAccessException{
+      Method method = pd.getWriteMethod();
+      this.primitive = pd.getPropertyType().isPrimitive();
+      Accessor generated = generate ? CodecGenerator.setter(method) : null;
+      this.write = generated != null ? generated : Accessor.setter(method);
+      Type[] types = method.getGenericParameterTypes();
+      this.type = types.length == 1 && types[0] instanceof ParameterizedType ? types[0] : pd
+          .getPropertyType();
+    }
+
+    /**
+     * 写入当前token的值,int/long/double/boolean属性直接写入基本类型
+     * 
+     * @param obj
+     * @param parser
+     * @param token
+     * @param deserializer
+     * @throws IOException
+     */
+    void bind(Object obj, JsonParser parser, JsonToken token, ObjectDeserializer deserializer)
+        throws IOException{
+      if(primitive && isNull(token)) return;
+      if(write.kind == Accessor.OBJECT){
+        write.set(obj, deserializer.tokenToObject(parser, token, type));
+        return;
+      }
+
+      switch(write.kind){
+      case Accessor.INT:
+        write.setInt(obj, parser.getIntValue());
+        break;
+      case Accessor.LONG:
+        write.setLong(obj, parser.getLongValue());
+        break;
+      case Accessor.DOUBLE:
+        write.setDouble(obj, parser.getDoubleValue());
+        break;
+      default:
+        write.setBoolean(obj, booleanValue(parser));
+        break;
+      }
+    }
+  }
+
+  /**
+   * 为编译期生成的codec提供parser当前的属性值
+   */
+  private static final class CodecReader implements JsonCodec.PropertyReader{
+    private final ObjectDeserializer deserializer;
+    private final JsonParser parser;
+
+    CodecReader(ObjectDeserializer deserializer, JsonParser parser){
+      this.deserializer = deserializer;
+      this.parser = parser;
+    }
+
+    public boolean isNull(){
+      return JsonDeserializer.isNull(parser.getCurrentToken());
+    }
+
+    public int readInt() throws IOException{
+      return parser.getIntValue();
+    }
+
+    public long readLong() throws IOException{
+      return parser.getLongValue();
+    }
+
+    public double readDouble() throws IOException{
+      return parser.getDoubleValue();
+    }
+
+    public boolean readBoolean() throws IOException{
+      return booleanValue(parser);
+    }
+
+    public Object read(Type type) throws IOException{
+      return deserializer.tokenToObject(parser, parser.getCurrentToken(), type);
+    }
   }
 
+  /**
+   * 从parser读取一个值,token为该值的第一个token(非null值);
+   * 返回时parser停在该值的最后一个token上
+   */
   static interface Deserializer{
     boolean canDeserialize(Class<?> clazz);
 
-    Object fromJson(Json json, Class<?> clazz);
+    Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException;
   }
 
   static interface ComplexDeserializer extends Deserializer{
-    Object fromJson(Json json, Class<?> rawClass, Type[] types);
+    Object fromToken(JsonParser parser, JsonToken token, Class<?> rawClass, Type[] types)
+        throws IOException;
   }
 
   private static class PrimitiveDeserializer implements Deserializer{
@@ -148,16 +454,23 @@ public final class JsonDeserializer{
       }
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      if(clazz == byte.class || clazz == Byte.class) return json.getDataAsByte();
-      else if(clazz == Integer.TYPE || clazz == Integer.class) return json.getDataAsInteger();
-      else if(clazz == Long.TYPE || clazz == Long.class) return json.getDataAsLong();
-      else if(clazz == Float.TYPE || clazz == Float.class) return json.getDataAsFloat();
-      else if(clazz == Double.TYPE || clazz == Double.class) return json.getDataAsDouble();
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      // 数字直接使用扫描时得到的值,字符串按原文解析
+      boolean number = token == JsonToken.VALUE_NUMBER;
+      if(clazz == byte.class || clazz == Byte.class) return Byte.parseByte(parser.getText());
+      else if(clazz == short.class || clazz == Short.class) return Short.parseShort(parser.getText());
+      else if(clazz == Integer.TYPE || clazz == Integer.class){
+        return number ? parser.getIntValue() : Integer.parseInt(parser.getText());
+      }else if(clazz == Long.TYPE || clazz == Long.class){
+        return number ? parser.getLongValue() : Long.parseLong(parser.getText());
+      }else if(clazz == Float.TYPE || clazz == Float.class) return Float.parseFloat(parser.getText());
+      else if(clazz == Double.TYPE || clazz == Double.class){
+        return number ? parser.getDoubleValue() : Double.parseDouble(parser.getText());
+      }else if(clazz == Boolean.TYPE || clazz == Boolean.class) return booleanValue(parser);
       else if(clazz == Character.TYPE || clazz == Character.class){
-        return json.getDataAsString().charAt(0);
-      }else if(clazz == BigInteger.class) return new BigInteger(json.getDataAsString());
-      else if(clazz == BigDecimal.class) return new BigDecimal(json.getDataAsString());
+        return parser.getText().charAt(0);
+      }else if(clazz == BigInteger.class) return new BigInteger(parser.getText());
+      else if(clazz == BigDecimal.class) return new BigDecimal(parser.getText());
 
       return null;
     }
@@ -169,10 +482,10 @@ public final class JsonDeserializer{
       return hasInterface(clazz, CharSequence.class);
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      if(clazz == String.class) return json.getDataAsString();
-      else if(clazz == StringBuilder.class) return new StringBuffer(json.getDataAsString());
-      else if(clazz == StringBuffer.class) return new StringBuffer(json.getDataAsString());
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      if(clazz == String.class) return parser.getText();
+      else if(clazz == StringBuilder.class) return new StringBuilder(parser.getText());
+      else if(clazz == StringBuffer.class) return new StringBuffer(parser.getText());
 
       return null;
     }
@@ -180,19 +493,16 @@ public final class JsonDeserializer{
 
   private class DateDeserializer implements Deserializer{
     public boolean canDeserialize(Class<?> clazz){
-      return hasSuper(clazz, Date.class);
+      return DateFormats.isDate(clazz);
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      SimpleDateFormat format = new SimpleDateFormat(dateFormat);
-      Object result = null;
-      try{
-        result = format.parse(json.getDataAsString());
-      }catch(ParseException e){
-        throw new RuntimeException("can't parse date " + json);
-      }
+    /**
+     * 数字按毫秒数读取,字符串按dateFormat解析
+     */
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      if(token == JsonToken.VALUE_NUMBER) return DateFormats.fromMillis(parser.getLongValue(), clazz);
 
-      return result;
+      return DateFormats.parse(parser.getText(), dateFormat, clazz);
     }
   }
 
@@ -201,15 +511,8 @@ public final class JsonDeserializer{
       return clazz.isEnum();
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      Object[] objs = clazz.getEnumConstants();
-      for(Object obj : objs){
-        if(json.getDataAsString().equals(obj.toString())){
-          return obj;
-        }
-      }
-
-      return null;
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      return TYPES.get(clazz).constants.get(parser.getText());
     }
   }
 
@@ -218,14 +521,59 @@ public final class JsonDeserializer{
       return clazz.isArray();
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      Object[] result = new Object[json.getArray().size()];
+    /**
+     * 按元素类型创建数组,基本类型的元素直接写入数组不装箱
+     */
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      expect(token, JsonToken.START_ARRAY, clazz);
       Class<?> com = clazz.getComponentType();
-      for(int i = 0; i < result.length; i++){
-        result[i] = jsonToObject(json.getArray().get(i), com);
+      Object result = Array.newInstance(com, 16);
+      int capacity = 16;
+      int size = 0;
+      while((token = parser.nextToken()) != JsonToken.END_ARRAY){
+        if(size == capacity){
+          Object temp = Array.newInstance(com, capacity <<= 1);
+          System.arraycopy(result, 0, temp, 0, size);
+          result = temp;
+        }
+
+        if(com.isPrimitive()) setPrimitive(result, size++, parser, token);
+        else
+          ((Object[]) result)[size++] = tokenToObject(parser, token, com);
       }
 
-      return result;
+      if(size == capacity) return result;
+
+      Object array = Array.newInstance(com, size);
+      System.arraycopy(result, 0, array, 0, size);
+      return array;
+    }
+
+    /**
+     * null、对象和数组元素保留默认值
+     * 
+     * @param array
+     * @param index
+     * @param parser
+     * @param token
+     * @throws IOException
+     */
+    private void setPrimitive(Object array, int index, JsonParser parser, JsonToken token)
+        throws IOException{
+      if(isNull(token)){
+        parser.skipChildren();
+        return;
+      }
+
+      if(array instanceof int[]) ((int[]) array)[index] = parser.getIntValue();
+      else if(array instanceof long[]) ((long[]) array)[index] = parser.getLongValue();
+      else if(array instanceof double[]) ((double[]) array)[index] = parser.getDoubleValue();
+      else if(array instanceof float[]) ((float[]) array)[index] = (float) parser.getDoubleValue();
+      else if(array instanceof boolean[]) ((boolean[]) array)[index] = booleanValue(parser);
+      else if(array instanceof byte[]) ((byte[]) array)[index] = Byte.parseByte(parser.getText());
+      else if(array instanceof short[]) ((short[]) array)[index] = Short.parseShort(parser.getText());
+      else
+        ((char[]) array)[index] = parser.getText().charAt(0);
     }
   }
 
@@ -234,38 +582,18 @@ public final class JsonDeserializer{
       return hasInterface(clazz, Collection.class);
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
-      return fromJson(json, clazz, null);
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      return fromToken(parser, token, clazz, null);
     }
 
-    public Object fromJson(Json json, Class<?> rawClass, Type[] types){
-      Collection<Object> result = null;
-      if(rawClass.isInterface()){
-        if(hasInterface(rawClass, SortedSet.class)){
-          result = new TreeSet<Object>();
-        }else if(hasInterface(rawClass, Set.class)){
-          result = new HashSet<Object>();
-        }else{
-          result = new LinkedList<Object>();
-        }
-      }else{
-        try{
-          result = (Collection<Object>) rawClass.newInstance();
-        }catch(Exception e){
-          result = new LinkedList<Object>();
-        }
-      }
-
-      for(Json temp : json.getArray()){
-        if(types == null || types.length == 0){
-          result.add(jsonToObject(temp));
-        }else if(types.length == 1){
-          if(types[0] instanceof Class){
-            result.add(jsonToObject(temp, (Class<?>) types[0]));
-          }else if(types[0] instanceof ParameterizedType){
-            result.add(jsonToObject(temp, (ParameterizedType) types[0]));
-          }
-        }
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> rawClass, Type[] types)
+        throws IOException{
+      expect(token, JsonToken.START_ARRAY, rawClass);
+      Collection<Object> result = newCollection(rawClass);
+      Type element = types != null && types.length == 1 ? types[0] : null;
+      while((token = parser.nextToken()) != JsonToken.END_ARRAY){
+        result.add(element == null ? tokenToObject(parser, token) : tokenToObject(parser, token,
+            element));
       }
 
       return result;
@@ -279,11 +607,13 @@ public final class JsonDeserializer{
     }
 
     @Override
-    public Object fromJson(Json json, Class<?> clazz){
-      return fromJson(json, clazz, null);
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      return fromToken(parser, token, clazz, null);
     }
 
-    public Object fromJson(Json json, Class<?> rawClass, Type[] types){
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> rawClass, Type[] types)
+        throws IOException{
+      expect(token, JsonToken.START_OBJECT, rawClass);
       Map<String, Object> result = null;
       try{
         result = (Map<String, Object>) rawClass.newInstance();
@@ -291,20 +621,16 @@ public final class JsonDeserializer{
         result = new LinkedHashMap<String, Object>();
       }
 
-      if(types == null || types.length == 0){
-        for(Map.Entry<String, Json> entry : json.getObject().entrySet()){
-          result.put(entry.getKey(), jsonToObject(entry.getValue()));
-        }
-      }else if(types.length == 2){
+      Type value = null;
+      if(types != null && types.length == 2){
         if(types[0] != String.class) throw new RuntimeException("only supports String keys");
-        for(Map.Entry<String, Json> entry : json.getObject().entrySet()){
-          if(types[1] instanceof Class){
-            result.put(entry.getKey(), jsonToObject(entry.getValue(), (Class<?>) types[1]));
-          }else{
-            result
-                .put(entry.getKey(), jsonToObject(entry.getValue(), (ParameterizedType) types[1]));
-          }
-        }
+        value = types[1];
+      }
+      while(parser.nextToken() == JsonToken.FIELD_NAME){
+        String key = parser.getText();
+        token = parser.nextToken();
+        result.put(key, value == null ? tokenToObject(parser, token) : tokenToObject(parser, token,
+            value));
       }
 
       return result;
@@ -317,63 +643,98 @@ public final class JsonDeserializer{
       return !clazz.isInterface() && !clazz.isArray();
     }
 
-    public Object fromJson(Json json, Class<?> clazz){
+    public Object fromToken(JsonParser parser, JsonToken token, Class<?> clazz) throws IOException{
+      expect(token, JsonToken.START_OBJECT, clazz);
+      JsonCodec<Object> codec = CodecGenerator.compiled(clazz);
+      if(codec != null) return fromToken(parser, codec);
+
+      BeanBinding bean = (generateCodec ? GENERATED_BINDINGS : BEAN_BINDINGS).get(clazz);
       Object obj = null;
       try{
-        obj = clazz.newInstance();
-        PropertyDescriptor[] pds = Introspector.getBeanInfo(clazz, Introspector.USE_ALL_BEANINFO)
-            .getPropertyDescriptors();
-        for(Map.Entry<String, Json> entry : json.getObject().entrySet()){
-          for(PropertyDescriptor pd : pds){
-            if(pd.getName().equals(entry.getKey())){
-              Method write = pd.getWriteMethod();
-              if(write == null){
-                break;
-              }else{
-                Object value = null;
-                Type[] types = write.getGenericParameterTypes();
-                if(types.length == 1 && types[0] instanceof ParameterizedType){
-                  value = jsonToObject(entry.getValue(), (ParameterizedType) types[0]);
-                }else{
-                  value = jsonToObject(entry.getValue(), pd.getPropertyType());
-                }
-
-                write.invoke(obj, value);
-                break;
-              }
-            }
-          }
-        }
+        obj = bean.newInstance(clazz);
       }catch(Exception e){
-        e.printStackTrace();
+        throw new RuntimeException("can't instantiate " + clazz, e);
+      }
+
+      while(parser.nextToken() == JsonToken.FIELD_NAME){
+        PropertyBinding binding = bean.properties.get(parser.getText());
+        token = parser.nextToken();
+        if(binding != null) binding.bind(obj, parser, token, this);
+        // 未知属性及未读取的对象/数组
+        parser.skipChildren();
       }
 
       return obj;
     }
 
-    Object jsonToObject(Json json){
-      if(json.isObject()) return new MapDeserializer().fromJson(json, HashMap.class);
-      if(json.isArray()) return new CollectionDeserializer().fromJson(json, LinkedList.class);
+    private Object fromToken(JsonParser parser, JsonCodec<Object> codec) throws IOException{
+      Object obj = codec.newInstance();
+      CodecReader reader = new CodecReader(this, parser);
+      while(parser.nextToken() == JsonToken.FIELD_NAME){
+        String name = parser.getText();
+        parser.nextToken();
+        codec.readProperty(obj, name, reader);
+        parser.skipChildren();
+      }
 
-      return json.getValue();
+      return obj;
     }
 
-    <T> T jsonToObject(Json json, Class<T> clazz){
-      return (T) findDeserializer(clazz).fromJson(json, clazz);
+    /**
+     * 按json结构读取:对象为HashMap,数组为LinkedList,其他为简单值
+     * 
+     * @param parser
+     * @param token
+     * @return
+     * @throws IOException
+     */
+    Object tokenToObject(JsonParser parser, JsonToken token) throws IOException{
+      if(token == null) return null;
+
+      switch(token){
+      case START_OBJECT:
+        return new MapDeserializer().fromToken(parser, token, HashMap.class);
+      case START_ARRAY:
+        return new CollectionDeserializer().fromToken(parser, token, LinkedList.class);
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER:
+        return parser.getNumberValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      default:
+        return null;
+      }
     }
 
-    <T> T jsonToObject(Json json, Type type){
-      if(type instanceof Class) return jsonToObject(json, (Class<T>) type);
+    <T> T tokenToObject(JsonParser parser, JsonToken token, Class<T> clazz) throws IOException{
+      if(token == null || token == JsonToken.VALUE_NULL) return null;
+      if(clazz == Object.class) return (T) tokenToObject(parser, token);
+
+      return (T) findDeserializer(clazz).fromToken(parser, token, clazz);
+    }
+
+    <T> T tokenToObject(JsonParser parser, JsonToken token, Type type) throws IOException{
+      if(type instanceof Class) return tokenToObject(parser, token, (Class<T>) type);
+      if(!(type instanceof ParameterizedType)) return (T) tokenToObject(parser, token);
+      if(token == null || token == JsonToken.VALUE_NULL) return null;
 
       ParameterizedType ptype = (ParameterizedType) type;
       Class<?> rawClass = (Class<?>) ptype.getRawType();
       Type[] types = ptype.getActualTypeArguments();
       Deserializer des = findDeserializer(rawClass);
       if(des instanceof ComplexDeserializer){
-        return (T) ((ComplexDeserializer) des).fromJson(json, rawClass, types);
+        return (T) ((ComplexDeserializer) des).fromToken(parser, token, rawClass, types);
       }
 
-      return (T) des.fromJson(json, rawClass);
+      return (T) des.fromToken(parser, token, rawClass);
+    }
+
+    void expect(JsonToken token, JsonToken expected, Class<?> clazz){
+      if(token != expected) throw new RuntimeException("can't deserialize " + token + " to " + clazz
+          .getName());
     }
 
   }
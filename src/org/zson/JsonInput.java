@@ -0,0 +1,146 @@
+package org.zson;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * JsonParser的底层输入,负责扫描空白、字符串和字面量,字符串内容解码到text中
+ *
+ * @author zhou
+ *
+ */
+abstract class JsonInput implements Closeable{
+  char[] text = new char[64];
+  int textLength;
+  // 是否解码字符串中的\\uXXXX,不解码时保持原样
+  boolean unicode = true;
+
+  /**
+   * 略过空白字符,返回下一个字符(不消费),输入结束返回-1
+   *
+   * @return
+   * @throws IOException
+   */
+  abstract int peek() throws IOException;
+
+  /**
+   * 消费peek返回的字符
+   */
+  abstract void skip();
+
+  /**
+   * 读取字符串内容(开始引号已消费)到text中
+   *
+   * @param quote
+   * @throws IOException
+   */
+  abstract void readString(char quote) throws IOException;
+
+  /**
+   * 略过字符串内容(开始引号已消费),不解码
+   *
+   * @param quote
+   * @throws IOException
+   */
+  abstract void skipString(char quote) throws IOException;
+
+  /**
+   * 读取数字/true/false/null到text中
+   *
+   * @throws IOException
+   */
+  abstract void readLiteral() throws IOException;
+
+  /**
+   * 读取字符串中的下一个字符,用于读取转义序列
+   *
+   * @return
+   * @throws IOException
+   */
+  abstract int nextChar() throws IOException;
+
+  /**
+   * 当前读取位置,用于定位错误
+   *
+   * @return
+   */
+  abstract long position();
+
+  static boolean isDelimiter(int c){
+    return c <= ' ' || c == ',' || c == '}' || c == ']' || c == ':';
+  }
+
+  /**
+   * 解码'\\'后的转义字符,\\uXXXX在读取字符串时直接解码,代理对依次写入两个char
+   *
+   * @param c
+   * @throws IOException
+   */
+  final void unescape(char c) throws IOException{
+    switch(c){
+    case 'b':
+      appendText('\b');
+      break;
+    case 'f':
+      appendText('\f');
+      break;
+    case 'n':
+      appendText('\n');
+      break;
+    case 'r':
+      appendText('\r');
+      break;
+    case 't':
+      appendText('\t');
+      break;
+    case 'u':
+      if(unicode){
+        appendText(readHex());
+      }else{
+        appendText('\\');
+        appendText('u');
+      }
+      break;
+    default:
+      appendText(c);
+      break;
+    }
+  }
+
+  private char readHex() throws IOException{
+    int code = 0;
+    for(int i = 0; i < 4; i++){
+      int c = nextChar();
+      int digit = Character.digit(c, 16);
+      if(digit < 0) throw error("invalid unicode escape");
+
+      code = (code << 4) | digit;
+    }
+
+    return (char) code;
+  }
+
+  final void appendText(char c){
+    if(textLength == text.length) growText(1);
+
+    text[textLength++] = c;
+  }
+
+  final void appendText(char[] chars, int offset, int length){
+    if(textLength + length > text.length) growText(length);
+
+    System.arraycopy(chars, offset, text, textLength, length);
+    textLength += length;
+  }
+
+  final void growText(int length){
+    char[] newText = new char[Math.max(text.length << 1, textLength + length)];
+    System.arraycopy(text, 0, newText, 0, textLength);
+    text = newText;
+  }
+
+  final RuntimeException error(String message){
+    return new RuntimeException("parse json error " + message + " at position " + position());
+  }
+
+}
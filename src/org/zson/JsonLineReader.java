@@ -0,0 +1,79 @@
+package org.zson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 逐个读取JSON Lines(NDJSON)中的对象,所有对象共用一个JsonParser,不需要先按行拆分。
+ * 读取时出现的IOException包装为RuntimeException抛出
+ *
+ * <pre>
+ * JsonLineReader&lt;Event&gt; reader = new JsonDeserializer().lines(in, Event.class);
+ * try{
+ *   while(reader.hasNext()){
+ *     Event event = reader.next();
+ *   }
+ * }finally{
+ *   reader.close();
+ * }
+ * </pre>
+ *
+ * @author zhou
+ *
+ * @param <T>
+ */
+public final class JsonLineReader<T> implements Iterator<T>, Closeable{
+  private final JsonDeserializer deserializer;
+  private final JsonParser parser;
+  private final Class<T> type;
+  // 下一个值的第一个token,输入结束时为null
+  private JsonToken next;
+  private boolean fetched;
+
+  JsonLineReader(JsonDeserializer deserializer, JsonParser parser, Class<T> type){
+    this.deserializer = deserializer;
+    this.parser = parser;
+    this.type = type;
+  }
+
+  public boolean hasNext(){
+    if(!fetched){
+      try{
+        next = parser.nextToken();
+      }catch(IOException e){
+        throw new RuntimeException(e);
+      }
+      fetched = true;
+    }
+
+    return next != null;
+  }
+
+  /**
+   * 读取下一行的对象,该行为null时返回null
+   *
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public T next(){
+    if(!hasNext()) throw new NoSuchElementException();
+
+    fetched = false;
+    try{
+      return (T) deserializer.readValue(parser, next, type);
+    }catch(IOException e){
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void remove(){
+    throw new UnsupportedOperationException();
+  }
+
+  public void close() throws IOException{
+    parser.close();
+  }
+
+}
@@ -0,0 +1,61 @@
+package org.zson;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 以JSON Lines(NDJSON)格式逐个写入对象,每个对象一行。所有对象共用一个输出缓冲,
+ * 每写入flushLines行才flush一次目标。不是线程安全的
+ *
+ * @author zhou
+ *
+ */
+public final class JsonLineWriter implements Closeable, Flushable{
+  private final Writer out;
+  private final JsonWriter writer;
+  private final int flushLines;
+  // 上次flush之后写入的行数
+  private int lines;
+
+  JsonLineWriter(Writer out, JsonSerializer.Settings settings, int flushLines){
+    if(flushLines < 1) throw new IllegalArgumentException("flushLines must be positive");
+
+    this.out = out;
+    this.writer = new JsonWriter(out, settings);
+    this.flushLines = flushLines;
+  }
+
+  /**
+   * 写入一行,obj为null时写入null
+   *
+   * @param obj
+   * @return
+   * @throws IOException
+   */
+  public JsonLineWriter write(Object obj) throws IOException{
+    if(obj == null) writer.write("null");
+    else
+      JsonSerializer.write(obj, writer);
+    writer.write('\n');
+
+    if(++lines >= flushLines) flush();
+    return this;
+  }
+
+  public void flush() throws IOException{
+    writer.flushBuffer();
+    out.flush();
+    lines = 0;
+  }
+
+  public void close() throws IOException{
+    try{
+      flush();
+    }finally{
+      out.close();
+    }
+  }
+
+}
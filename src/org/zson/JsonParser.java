@@ -0,0 +1,576 @@
+package org.zson;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 流式json解析器,通过固定大小的缓冲区从Reader/InputStream中逐个读取token,
+ * 不需要先将整个文档读入内存。字节输入按UTF-8直接扫描,字符串内容在读取时才解码
+ *
+ * <pre>
+ * JsonParser parser = new JsonParser(reader);
+ * JsonToken token;
+ * while((token = parser.nextToken()) != null){
+ *   ...
+ * }
+ * </pre>
+ *
+ * @author zhou
+ *
+ */
+public final class JsonParser implements Closeable{
+  private static final int IN_OBJECT = 1;
+  private static final int NOT_EMPTY = 2;
+
+  static final int NUMBER_LONG = 0;
+  static final int NUMBER_BIG_INTEGER = 1;
+  static final int NUMBER_DOUBLE = 2;
+  // 有效数字不超过15位且指数绝对值不超过22时,一次乘除即可得到精确的double
+  private static final int MAX_EXACT_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+      1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  private final JsonInput input;
+  private final SymbolTable symbols = new SymbolTable();
+  private String textValue;
+  // 当前字符串token尚未读取,引号为quote
+  private boolean incomplete;
+  private char quote;
+
+  // 每层容器的状态及当前字段名,下标0为根
+  private int[] contexts = new int[16];
+  private String[] names = new String[16];
+  private int depth;
+  private JsonToken current;
+
+  // 当前数字:类型、整数值(小数时为有效数字)、十进制指数,exact为false时需要解析文本
+  private int numberType;
+  private long numberValue;
+  private int numberScale;
+  private boolean exact;
+
+  public JsonParser(Reader reader){
+    this(new CharInput(reader));
+  }
+
+  /**
+   * 以UTF-8编码读取输入流
+   *
+   * @param in
+   */
+  public JsonParser(InputStream in){
+    this(new Utf8Input(in));
+  }
+
+  public JsonParser(String json){
+    this(new StringReader(json));
+  }
+
+  /**
+   * 直接解析UTF-8字节
+   *
+   * @param json
+   * @param offset
+   * @param length
+   */
+  public JsonParser(byte[] json, int offset, int length){
+    this(new Utf8Input(json, offset, length));
+  }
+
+  /**
+   * 解析ByteBuffer中position到limit之间的UTF-8字节,不改变其position
+   *
+   * @param json
+   */
+  public JsonParser(ByteBuffer json){
+    this(json.hasArray() ? new Utf8Input(json.array(), json.arrayOffset() + json.position(),
+        json.remaining()) : new Utf8Input(new ByteBufferInputStream(json.duplicate())));
+  }
+
+  /**
+   * 以内存映射方式读取UTF-8文件,文件内容不进入堆内存,超过映射窗口大小时移动窗口
+   *
+   * @param file
+   * @throws IOException
+   */
+  public JsonParser(File file) throws IOException{
+    this(new Utf8Input(new MappedInputStream(new FileInputStream(file).getChannel())));
+  }
+
+  JsonParser(JsonInput input){
+    this.input = input;
+  }
+
+  /**
+   * @param json
+   * @param unicode 为false时字符串中的\\uXXXX保持原样
+   */
+  JsonParser(String json, boolean unicode){
+    this(new CharInput(new StringReader(json)));
+    this.input.unicode = unicode;
+  }
+
+  /**
+   * 读取下一个token,输入结束时返回null
+   *
+   * @return
+   * @throws IOException
+   */
+  public JsonToken nextToken() throws IOException{
+    if(incomplete){
+      incomplete = false;
+      input.skipString(quote);
+    }
+
+    int c = input.peek();
+    if(current == JsonToken.FIELD_NAME) return current = valueToken(c);
+
+    if(c < 0){
+      if(depth != 0) throw error("unexpected end of input");
+      return current = null;
+    }
+    if(c == '}' || c == ']') return current = endToken(c);
+
+    if(depth > 0){
+      if((contexts[depth] & NOT_EMPTY) != 0){
+        if(c != ',') throw error("expect ',' but found '" + (char) c + "'");
+        input.skip();
+        c = input.peek();
+      }
+
+      contexts[depth] |= NOT_EMPTY;
+      if((contexts[depth] & IN_OBJECT) != 0) return current = fieldToken(c);
+    }
+
+    return current = valueToken(c);
+  }
+
+  public JsonToken getCurrentToken(){
+    return current;
+  }
+
+  /**
+   * 当前所在的字段名,START_OBJECT/START_ARRAY返回其所属的字段名
+   *
+   * @return
+   */
+  public String getCurrentName(){
+    if(current == JsonToken.START_OBJECT || current == JsonToken.START_ARRAY){
+      return depth > 1 ? names[depth - 1] : null;
+    }
+
+    return names[depth];
+  }
+
+  /**
+   * 当前token的文本内容
+   *
+   * @return
+   * @throws IOException
+   */
+  public String getText() throws IOException{
+    if(current == null) return null;
+
+    switch(current){
+    case FIELD_NAME:
+      return names[depth];
+    case VALUE_STRING:
+      readIncomplete();
+      return textValue();
+    case VALUE_NUMBER:
+      return textValue();
+    default:
+      return current.text;
+    }
+  }
+
+  /**
+   * 读取尚未读取的字符串内容
+   *
+   * @throws IOException
+   */
+  private void readIncomplete() throws IOException{
+    if(!incomplete) return;
+
+    incomplete = false;
+    input.readString(quote);
+    textValue = null;
+  }
+
+  private String textValue(){
+    if(textValue == null) textValue = new String(input.text, 0, input.textLength);
+    return textValue;
+  }
+
+  /**
+   * 当前字符串/数字token的字符内容,不创建String,下一次调用nextToken后失效
+   *
+   * @return 内容为[0, getTextLength())
+   * @throws IOException
+   */
+  char[] getTextCharacters() throws IOException{
+    if(current == JsonToken.VALUE_STRING) readIncomplete();
+
+    return input.text;
+  }
+
+  int getTextLength(){
+    return input.textLength;
+  }
+
+  /**
+   * 当前数字token的类型
+   *
+   * @return NUMBER_LONG/NUMBER_BIG_INTEGER/NUMBER_DOUBLE
+   */
+  int getNumberType(){
+    return numberType;
+  }
+
+  /**
+   * 同{@link #getLongValue()},超出int范围时抛出NumberFormatException
+   *
+   * @return
+   * @throws IOException
+   */
+  public int getIntValue() throws IOException{
+    long value = getLongValue();
+    if(value != (int) value) throw new NumberFormatException("out of int range: " + getText());
+
+    return (int) value;
+  }
+
+  /**
+   * 数字token直接返回扫描时得到的值,小数或超出long范围时抛出NumberFormatException
+   *
+   * @return
+   * @throws IOException
+   */
+  public long getLongValue() throws IOException{
+    if(current != JsonToken.VALUE_NUMBER) return Long.parseLong(getText());
+
+    switch(numberType){
+    case NUMBER_LONG:
+      return numberValue;
+    case NUMBER_BIG_INTEGER:
+      throw new NumberFormatException("out of long range: " + getText());
+    default:
+      throw new NumberFormatException("not an integer: " + getText());
+    }
+  }
+
+  public double getDoubleValue() throws IOException{
+    if(current != JsonToken.VALUE_NUMBER) return Double.parseDouble(getText());
+
+    if(numberType == NUMBER_LONG) return numberValue;
+    if(!exact) return Double.parseDouble(getText());
+
+    if(numberScale < 0) return numberValue / POWERS_OF_TEN[-numberScale];
+    return numberValue * POWERS_OF_TEN[numberScale];
+  }
+
+  /**
+   * 整数返回Long(超出long范围时返回BigInteger),小数返回Double(超出double范围时返回BigDecimal)
+   *
+   * @return
+   * @throws IOException
+   */
+  public Number getNumberValue() throws IOException{
+    if(current == JsonToken.VALUE_NUMBER){
+      if(numberType == NUMBER_LONG) return numberValue;
+      if(numberType == NUMBER_BIG_INTEGER) return new BigInteger(getText());
+    }
+
+    double value = getDoubleValue();
+    if(Double.isInfinite(value)) return new BigDecimal(getText());
+
+    return value;
+  }
+
+  /**
+   * 当前token为START_OBJECT/START_ARRAY时,略过其所有子元素,停在对应的END_OBJECT/END_ARRAY上
+   *
+   * @return
+   * @throws IOException
+   */
+  public JsonParser skipChildren() throws IOException{
+    if(current != JsonToken.START_OBJECT && current != JsonToken.START_ARRAY) return this;
+
+    int level = depth;
+    while(nextToken() != null){
+      if(depth < level) break;
+    }
+
+    return this;
+  }
+
+  public void close() throws IOException{
+    input.close();
+  }
+
+  private JsonToken valueToken(int c) throws IOException{
+    switch(c){
+    case '{':
+      input.skip();
+      push(IN_OBJECT);
+      return JsonToken.START_OBJECT;
+    case '[':
+      input.skip();
+      push(0);
+      return JsonToken.START_ARRAY;
+    case '"':
+    case '\'':
+      input.skip();
+      // 字符串内容在getText时才读取
+      incomplete = true;
+      quote = (char) c;
+      return JsonToken.VALUE_STRING;
+    case -1:
+      throw error("unexpected end of input");
+    default:
+      return literalToken();
+    }
+  }
+
+  private JsonToken fieldToken(int c) throws IOException{
+    if(c != '"' && c != '\'') throw error("expect field name but found '" + (char) c + "'");
+
+    input.skip();
+    input.readString((char) c);
+    // 重复的键名使用同一个实例
+    names[depth] = symbols.lookup(input.text, input.textLength);
+
+    // 略过':'
+    if(input.peek() != ':') throw error("expect ':' after " + names[depth]);
+    input.skip();
+    return JsonToken.FIELD_NAME;
+  }
+
+  private JsonToken endToken(int c){
+    int expect = (contexts[depth] & IN_OBJECT) != 0 ? '}' : ']';
+    if(depth == 0 || c != expect) throw error("unexpected '" + (char) c + "'");
+
+    input.skip();
+    depth--;
+    return c == '}' ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+  }
+
+  private void push(int context){
+    if(++depth == contexts.length){
+      int[] newContexts = new int[depth << 1];
+      System.arraycopy(contexts, 0, newContexts, 0, depth);
+      contexts = newContexts;
+      String[] newNames = new String[depth << 1];
+      System.arraycopy(names, 0, newNames, 0, depth);
+      names = newNames;
+    }
+
+    contexts[depth] = context;
+    names[depth] = null;
+  }
+
+  /**
+   * 读取数字/true/false/null
+   *
+   * @return
+   * @throws IOException
+   */
+  private JsonToken literalToken() throws IOException{
+    input.readLiteral();
+    textValue = null;
+
+    if(isText("true")) return JsonToken.VALUE_TRUE;
+    if(isText("false")) return JsonToken.VALUE_FALSE;
+    if(isText("null")) return JsonToken.VALUE_NULL;
+
+    char first = input.textLength == 0 ? 0 : input.text[0];
+    if(first == '-' || isDigit(first)){
+      scanNumber();
+      return JsonToken.VALUE_NUMBER;
+    }
+
+    throw error("near " + new String(input.text, 0, input.textLength));
+  }
+
+  /**
+   * 在text中直接校验并计算数字,整数累加为long,溢出时标记为BigInteger
+   */
+  private void scanNumber(){
+    char[] text = input.text;
+    int length = input.textLength;
+    int i = 0;
+    boolean negative = text[0] == '-';
+    if(negative) i++;
+
+    // 以负数累加,可以表示Long.MIN_VALUE
+    long value = 0;
+    int digits = 0;
+    boolean overflow = false;
+    int start = i;
+    for(; i < length && isDigit(text[i]); i++){
+      overflow |= overflows(value, text[i]);
+      if(!overflow) value = value * 10 - (text[i] - '0');
+      digits++;
+    }
+    if(i == start || (text[start] == '0' && i - start > 1)) throw invalidNumber();
+
+    int scale = 0;
+    boolean integral = true;
+    if(i < length && text[i] == '.'){
+      integral = false;
+      start = ++i;
+      for(; i < length && isDigit(text[i]); i++){
+        overflow |= overflows(value, text[i]);
+        if(!overflow) value = value * 10 - (text[i] - '0');
+        digits++;
+      }
+      if(i == start) throw invalidNumber();
+      scale = start - i;
+    }
+
+    if(i < length && (text[i] == 'e' || text[i] == 'E')){
+      integral = false;
+      boolean negativeExponent = false;
+      if(++i < length && (text[i] == '+' || text[i] == '-')) negativeExponent = text[i++] == '-';
+
+      int exponent = 0;
+      start = i;
+      for(; i < length && isDigit(text[i]); i++){
+        // 超出范围的指数只需要保证结果为0或无穷
+        if(exponent < 100000) exponent = exponent * 10 + (text[i] - '0');
+      }
+      if(i == start) throw invalidNumber();
+      scale += negativeExponent ? -exponent : exponent;
+    }
+    if(i != length) throw invalidNumber();
+
+    if(integral){
+      this.numberType = overflow ? NUMBER_BIG_INTEGER : NUMBER_LONG;
+      // 不能沿用上一个小数的状态,BigInteger按文本解析为double
+      this.exact = false;
+      this.numberScale = 0;
+      this.numberValue = negative ? value : -value;
+      if(!negative && value == Long.MIN_VALUE) this.numberType = NUMBER_BIG_INTEGER;
+      return;
+    }
+
+    this.numberType = NUMBER_DOUBLE;
+    // -0.0需要解析文本保留符号
+    this.exact = !overflow && digits <= MAX_EXACT_DIGITS && scale >= -22 && scale <= 22
+        && !(negative && value == 0);
+    this.numberValue = negative ? value : -value;
+    this.numberScale = scale;
+  }
+
+  /**
+   * value * 10 - digit是否超出long范围
+   *
+   * @param value
+   * @param digit
+   * @return
+   */
+  private static boolean overflows(long value, char digit){
+    return value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + (digit - '0');
+  }
+
+  private static boolean isDigit(char c){
+    return c >= '0' && c <= '9';
+  }
+
+  private RuntimeException invalidNumber(){
+    return error("invalid number " + new String(input.text, 0, input.textLength));
+  }
+
+  private boolean isText(String literal){
+    if(input.textLength != literal.length()) return false;
+
+    for(int i = 0; i < literal.length(); i++){
+      if(input.text[i] != literal.charAt(i)) return false;
+    }
+
+    return true;
+  }
+
+  private RuntimeException error(String message){
+    return input.error(message);
+  }
+
+  /**
+   * 按块读取堆外ByteBuffer
+   */
+  private static final class ByteBufferInputStream extends InputStream{
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer){
+      this.buffer = buffer;
+    }
+
+    public int read(){
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    public int read(byte[] bytes, int offset, int length){
+      if(!buffer.hasRemaining()) return -1;
+
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+  }
+
+  /**
+   * 按窗口映射文件,支持超过2G的文件
+   */
+  private static final class MappedInputStream extends InputStream{
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    // 下一个窗口在文件中的起始位置
+    private long offset;
+    private MappedByteBuffer window;
+
+    MappedInputStream(FileChannel channel) throws IOException{
+      this.channel = channel;
+      this.size = channel.size();
+    }
+
+    public int read() throws IOException{
+      return nextWindow() ? window.get() & 0xFF : -1;
+    }
+
+    public int read(byte[] bytes, int offset, int length) throws IOException{
+      if(!nextWindow()) return -1;
+
+      int count = Math.min(length, window.remaining());
+      window.get(bytes, offset, count);
+      return count;
+    }
+
+    private boolean nextWindow() throws IOException{
+      if(window != null && window.hasRemaining()) return true;
+      if(offset >= size) return false;
+
+      long length = Math.min(WINDOW_SIZE, size - offset);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+      offset += length;
+      return true;
+    }
+
+    public void close() throws IOException{
+      window = null;
+      channel.close();
+    }
+  }
+
+}
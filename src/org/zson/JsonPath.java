@@ -0,0 +1,184 @@
+package org.zson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按路径从json中提取值,直接在JsonParser上匹配,不匹配的子树略过而不解析,只为匹配的值创建Json。
+ * 编译后的实例不可变,可以重复使用并在多线程间共享
+ *
+ * <pre>
+ * JsonPath path = JsonPath.compile("$.data.items[*].id");
+ * List&lt;Json&gt; ids = path.extract(response);
+ * </pre>
+ *
+ * 支持的语法:.name、['name']、[index]、[*]、.*,开头的$可以省略
+ *
+ * @author zhou
+ *
+ */
+public final class JsonPath{
+  // 匹配任意属性或元素
+  private static final int ANY = -1;
+  // 只匹配属性名
+  private static final int NAME = -2;
+
+  private final String path;
+  // 每一级的属性名(仅NAME时有效)和下标
+  private final String[] names;
+  private final int[] indexes;
+
+  private JsonPath(String path, List<String> names, List<Integer> indexes){
+    this.path = path;
+    this.names = names.toArray(new String[names.size()]);
+    this.indexes = new int[indexes.size()];
+    for(int i = 0; i < this.indexes.length; i++){
+      this.indexes[i] = indexes.get(i);
+    }
+  }
+
+  /**
+   * 编译路径
+   *
+   * @param path
+   * @return
+   * @throws IllegalArgumentException 路径格式错误
+   */
+  public static JsonPath compile(String path){
+    List<String> names = new ArrayList<String>();
+    List<Integer> indexes = new ArrayList<Integer>();
+    int i = path.startsWith("$") ? 1 : 0;
+    boolean first = true;
+    while(i < path.length()){
+      char c = path.charAt(i);
+      if(c == '['){
+        int close = path.indexOf(']', i);
+        if(close < 0) throw invalid(path);
+
+        String segment = path.substring(i + 1, close).trim();
+        if(segment.equals("*")){
+          names.add(null);
+          indexes.add(ANY);
+        }else if(segment.length() > 1 && (segment.charAt(0) == '\'' || segment.charAt(0) == '"')
+            && segment.charAt(segment.length() - 1) == segment.charAt(0)){
+          names.add(segment.substring(1, segment.length() - 1));
+          indexes.add(NAME);
+        }else{
+          names.add(null);
+          indexes.add(parseIndex(path, segment));
+        }
+        i = close + 1;
+      }else{
+        if(c == '.') i++;
+        else if(!first) throw invalid(path);
+
+        int end = i;
+        while(end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '['){
+          end++;
+        }
+        if(end == i) throw invalid(path);
+
+        String name = path.substring(i, end);
+        names.add(name.equals("*") ? null : name);
+        indexes.add(name.equals("*") ? ANY : NAME);
+        i = end;
+      }
+      first = false;
+    }
+
+    return new JsonPath(path, names, indexes);
+  }
+
+  /**
+   * 按文档顺序返回所有匹配的值
+   *
+   * @param json
+   * @return
+   */
+  public List<Json> extract(String json){
+    try{
+      return extract(new JsonParser(json));
+    }catch(IOException e){
+      // 内存中的输入不会抛出IOException
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * 以UTF-8编码从输入流中提取
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  public List<Json> extract(InputStream in) throws IOException{
+    return extract(new JsonParser(in));
+  }
+
+  /**
+   * 从parser的下一个值中提取,读取完成后parser停在该值的结束位置
+   *
+   * @param parser
+   * @return
+   * @throws IOException
+   */
+  public List<Json> extract(JsonParser parser) throws IOException{
+    List<Json> result = new ArrayList<Json>();
+    JsonToken token = parser.nextToken();
+    if(token != null) match(parser, token, 0, result);
+
+    return result;
+  }
+
+  private void match(JsonParser parser, JsonToken token, int step, List<Json> result)
+      throws IOException{
+    if(step == names.length){
+      result.add(Json.read(parser, token));
+      return;
+    }
+
+    int index = indexes[step];
+    if(token == JsonToken.START_OBJECT && index < 0){
+      while(parser.nextToken() == JsonToken.FIELD_NAME){
+        boolean matched = index == ANY || names[step].equals(parser.getCurrentName());
+        JsonToken value = parser.nextToken();
+        if(matched) match(parser, value, step + 1, result);
+        else
+          parser.skipChildren();
+      }
+    }else if(token == JsonToken.START_ARRAY && index != NAME){
+      int i = 0;
+      JsonToken value;
+      while((value = parser.nextToken()) != JsonToken.END_ARRAY){
+        if(index == ANY || index == i) match(parser, value, step + 1, result);
+        else
+          parser.skipChildren();
+        i++;
+      }
+    }else{
+      parser.skipChildren();
+    }
+  }
+
+  private static int parseIndex(String path, String segment){
+    try{
+      int index = Integer.parseInt(segment);
+      if(index >= 0) return index;
+    }catch(NumberFormatException e){
+      // 下面统一抛出
+    }
+
+    throw invalid(path);
+  }
+
+  private static IllegalArgumentException invalid(String path){
+    return new IllegalArgumentException("invalid json path " + path);
+  }
+
+  public String toString(){
+    return path;
+  }
+
+}
@@ -1,59 +1,194 @@
 package org.zson;
 
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * json序列化工具,默认不序列化transient和static变量
+ * json序列化工具,默认不序列化transient和static变量。
+ * 配置完成后的实例是线程安全的,可在多个线程间共享
  * 
  * @author zhou
  * 
  */
 @SuppressWarnings("unchecked")
 public final class JsonSerializer{
-  private final List<Serializer> serializers = new ArrayList<Serializer>();
   private static final String separator = "\n";
+  // 预先生成缩进字符串的层级数
+  private static final int INDENT_CACHE = 16;
+  private static final int LINES_PER_FLUSH = 1024;
+  // 并行序列化时每个任务处理的元素个数
+  private static final int PARALLEL_CHUNK = 512;
   static final char QUOTE = '"';
 
-  private String dateFormat = "yyyy-MM-dd HH:mm:ss";
-  private boolean ignoreParentAttr = false;
-  private boolean escapeChar = false;
-  private boolean ignoreNull = true;
-  private boolean unicode = false;
+  // 序列化器不保存状态,所有实例共享
+  private static final ObjectSerializer ROOT = new ObjectSerializer();
+  private static final Serializer NULL = new NullSerializer();
+  private static final Serializer[] SERIALIZERS = { new BooleanNumberSerializer(), new CharSeqEnumSerializer(), new DateSerializer(),
+      new CollectionArraySerializer(), new MapSerializer(), ROOT };
+
+  // 类型到序列化器的映射,每个类型只查找一次
+  private static final ClassValue<Serializer> DISPATCH = new ClassValue<Serializer>(){
+    protected Serializer computeValue(Class<?> type){
+      for(Serializer serializer : SERIALIZERS){
+        if(serializer.canSerialize(type)) return serializer;
+      }
+
+      return ROOT;
+    }
+  };
 
-  private int depth = 1;
-  private String indent;
+  private static final ClassValue<ClassFields> CLASS_FIELDS = new ClassFieldsValue(false);
+  private static final ClassValue<ClassFields> GENERATED_FIELDS = new ClassFieldsValue(true);
 
-  public JsonSerializer(){
-    this.serializers.add(new BooleanNumberSerializer());
-    this.serializers.add(new CharSeqEnumSerializer());
-    this.serializers.add(new DateSerializer());
-    this.serializers.add(new CollectionArraySerializer());
-    this.serializers.add(new MapSerializer());
-    this.serializers.add(new ObjectSerializer());
-  }
+  // 修改配置时整体替换,正在进行的序列化使用开始时的配置
+  private volatile Settings settings = new Settings();
 
   public String serialize(Object obj){
-    String result = new ObjectSerializer().serialize(obj);
-    depth = 1;
-    return unicode && result != null ? Unicoder.encode(result) : result;
+    if(obj == null && settings.ignoreNull) return null;
+
+    StringBuilder result = new StringBuilder();
+    try{
+      serialize(obj, result);
+    }catch(IOException e){
+      // StringBuilder不会抛出IOException
+      throw new RuntimeException(e);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * 序列化并直接写入目标,不生成中间字符串
+   * 
+   * @param obj
+   * @param out
+   * @throws IOException
+   */
+  public void serialize(Object obj, Appendable out) throws IOException{
+    JsonWriter writer = new JsonWriter(out, settings);
+    ROOT.serialize(obj, writer);
+    if(obj != null && !ROOT.isPrimitive(obj)) ROOT.appSeparator(writer);
+
+    writer.flushBuffer();
+  }
+
+  public void serialize(Object obj, Writer out) throws IOException{
+    serialize(obj, (Appendable) out);
+  }
+
+  /**
+   * 以UTF-8编码写入输出流,写入后flush但不关闭
+   * 
+   * @param obj
+   * @param out
+   * @throws IOException
+   */
+  public void serialize(Object obj, OutputStream out) throws IOException{
+    Writer writer = new OutputStreamWriter(out, "UTF-8");
+    serialize(obj, writer);
+    writer.flush();
+  }
+
+  /**
+   * PrintStream(如System.out)同时是Appendable和OutputStream,按其自身的编码写入字符,写入后flush
+   * 
+   * @param obj
+   * @param out
+   * @throws IOException
+   */
+  public void serialize(Object obj, PrintStream out) throws IOException{
+    serialize(obj, (Appendable) out);
+    out.flush();
+  }
+
+  /**
+   * 以JSON Lines格式写入多个对象,每写入1024行flush一次
+   * 
+   * @param out
+   * @return
+   */
+  public JsonLineWriter lines(Writer out){
+    return lines(out, LINES_PER_FLUSH);
+  }
+
+  /**
+   * 以JSON Lines格式写入多个对象,使用调用时的配置,但不格式化且总是转义字符串(保证每个对象只占一行)
+   * 
+   * @param out
+   * @param flushLines 每写入多少行flush一次目标
+   * @return
+   */
+  public JsonLineWriter lines(Writer out, int flushLines){
+    Settings copy = settings.copy();
+    copy.indents = null;
+    copy.escapeChar = true;
+    return new JsonLineWriter(out, copy, flushLines);
+  }
+
+  /**
+   * 以UTF-8编码写入输出流,关闭JsonLineWriter时关闭输出流
+   * 
+   * @param out
+   * @return
+   * @throws IOException
+   */
+  public JsonLineWriter lines(OutputStream out) throws IOException{
+    return lines(out, LINES_PER_FLUSH);
+  }
+
+  /**
+   * 以UTF-8编码写入输出流,关闭JsonLineWriter时关闭输出流
+   * 
+   * @param out
+   * @param flushLines 每写入多少行flush一次目标
+   * @return
+   * @throws IOException
+   */
+  public JsonLineWriter lines(OutputStream out, int flushLines) throws IOException{
+    return lines(new OutputStreamWriter(out, "UTF-8"), flushLines);
+  }
+
+  /**
+   * 按writer中的配置写入一个非null对象
+   * 
+   * @param obj
+   * @param out
+   * @throws IOException
+   */
+  static void write(Object obj, JsonWriter out) throws IOException{
+    ROOT.serialize(obj, out);
   }
 
   /**
-   * 设定日期格式
+   * 设定Date和LocalDateTime的格式,pattern语法同DateTimeFormatter
    * 
    * @param pattern
    * @return
    */
   public JsonSerializer dateFormat(String pattern){
-    this.dateFormat = pattern;
+    Settings copy = settings.copy();
+    copy.dateFormat = pattern;
+    settings = copy;
     return this;
   }
 
@@ -64,7 +199,9 @@ public final class JsonSerializer{
    * @return
    */
   public JsonSerializer ignoreParentAttr(boolean ignore){
-    this.ignoreParentAttr = ignore;
+    Settings copy = settings.copy();
+    copy.ignoreParentAttr = ignore;
+    settings = copy;
     return this;
   }
 
@@ -75,8 +212,9 @@ public final class JsonSerializer{
    * @return
    */
   public JsonSerializer ignoreNull(boolean ignore){
-    this.ignoreNull = ignore;
-    if(!ignoreNull) serializers.add(new NullSerializer());
+    Settings copy = settings.copy();
+    copy.ignoreNull = ignore;
+    settings = copy;
     return this;
   }
 
@@ -87,365 +225,747 @@ public final class JsonSerializer{
    * @return
    */
   public JsonSerializer prettyFormat(int indentSpace){
-    indent = "";
-    for(int i = 0; i < indentSpace; i++){
-      indent += " ";
+    char[] spaces = new char[indentSpace * (INDENT_CACHE - 1)];
+    Arrays.fill(spaces, ' ');
+    String[] indents = new String[INDENT_CACHE];
+    for(int i = 0; i < INDENT_CACHE; i++){
+      indents[i] = new String(spaces, 0, indentSpace * i);
     }
+
+    Settings copy = settings.copy();
+    copy.indents = indents;
+    settings = copy;
     return this;
   }
 
   /**
-   * 是否使用unicode编码字符串,默认不启用
+   * 是否使用unicode编码字符串,默认不启用。默认编码码点不小于0x4E00的字符
    * 
    * @param unicode
    * @return
    */
   public JsonSerializer unicodeOutput(boolean unicode){
-    this.unicode = unicode;
+    Settings copy = settings.copy();
+    copy.unicode = unicode;
+    settings = copy;
+    return this;
+  }
+
+  /**
+   * 使用unicode编码码点在[start, end]之间的字符,增补字符按代理对编码
+   * 
+   * @param start
+   * @param end
+   * @return
+   */
+  public JsonSerializer unicodeOutput(int start, int end){
+    Settings copy = settings.copy();
+    copy.unicode = true;
+    copy.unicodeStart = start;
+    copy.unicodeEnd = end;
+    settings = copy;
     return this;
   }
 
   /**
-   * 是否对特殊字符转义(默认不转义)
+   * 日期(包括Instant/LocalDateTime/OffsetDateTime)是否写为毫秒数,启用后不再使用dateFormat
+   * 
+   * @param millis
+   * @return
+   */
+  public JsonSerializer epochMillis(boolean millis){
+    Settings copy = settings.copy();
+    copy.epochMillis = millis;
+    settings = copy;
+    return this;
+  }
+
+  /**
+   * List(RandomAccess)或对象数组的元素个数不小于threshold时,在ForkJoinPool中分段并行序列化,
+   * 输出与顺序序列化完全相同。threshold不大于0时不启用(默认)
+   * 
+   * @param threshold
+   * @return
+   */
+  public JsonSerializer parallel(int threshold){
+    Settings copy = settings.copy();
+    copy.parallelThreshold = threshold;
+    settings = copy;
+    return this;
+  }
+
+  /**
+   * 是否在运行时为bean生成直接调用getter的读取代码(默认不生成),无法生成时使用反射
+   * 
+   * @param generate
+   * @return
+   */
+  public JsonSerializer generateCodec(boolean generate){
+    Settings copy = settings.copy();
+    copy.generateCodec = generate;
+    settings = copy;
+    return this;
+  }
+
+  /**
+   * 是否对引号、反斜杠及控制字符转义(默认不转义)
    * 
    * @param escape
    * @return
    */
   public JsonSerializer escapeChar(boolean escape){
-    this.escapeChar = escape;
+    Settings copy = settings.copy();
+    copy.escapeChar = escape;
+    settings = copy;
     return this;
   }
 
-  private static String trimLeft(String target){
-    int index = 0;
-    for(; index < target.length(); index++){
-      if(target.charAt(index) != ' ') break;
+  /**
+   * 序列化配置,发布后不再修改
+   */
+  static final class Settings implements Cloneable{
+    String dateFormat = "yyyy-MM-dd HH:mm:ss";
+    boolean ignoreParentAttr = false;
+    boolean escapeChar = false;
+    boolean ignoreNull = true;
+    boolean unicode = false;
+    int unicodeStart = 0x4E00;
+    int unicodeEnd = Character.MAX_CODE_POINT;
+    // 各嵌套层级的缩进,为null时不格式化
+    String[] indents;
+    boolean generateCodec = false;
+    boolean epochMillis = false;
+    int parallelThreshold = 0;
+
+    Settings copy(){
+      try{
+        return (Settings) clone();
+      }catch(CloneNotSupportedException e){
+        throw new AssertionError(e);
+      }
     }
-
-    return target.substring(index);
   }
 
-  public static interface Serializer{
+  static interface Serializer{
     /**
-     * 是否能序列化此对象
+     * 是否能序列化此类型的对象(null由NullSerializer处理)
      * 
-     * @param obj
+     * @param type
      * @return
      */
-    boolean canSerialize(Object obj);
+    boolean canSerialize(Class<?> type);
 
     /**
-     * 序列化目标对象 返回序列化后内容
+     * 序列化目标对象 写入输出
      * 
      * @param obj
-     * @return
+     * @param out
+     * @throws IOException
      */
-    String serializeObject(Object obj);
+    void serializeObject(Object obj, JsonWriter out) throws IOException;
   }
 
   private static class BooleanNumberSerializer implements Serializer{
 
-    public boolean canSerialize(Object obj){
-      return obj instanceof Boolean || obj instanceof Number;
+    public boolean canSerialize(Class<?> type){
+      return type == Boolean.class || Number.class.isAssignableFrom(type);
     }
 
-    public String serializeObject(Object obj){
-      return obj.toString();
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      out.write(obj.toString());
     }
 
   }
 
   private static class NullSerializer implements Serializer{
 
-    public boolean canSerialize(Object obj){
-      return obj == null;
+    public boolean canSerialize(Class<?> type){
+      return false;
     }
 
-    public String serializeObject(Object obj){
-      return "null";
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      if(!out.settings.ignoreNull) out.write("null");
     }
 
   }
 
-  private class CharSeqEnumSerializer implements Serializer{
+  private static class CharSeqEnumSerializer implements Serializer{
 
-    public boolean canSerialize(Object obj){
-      return obj instanceof CharSequence || obj instanceof Enum;
+    public boolean canSerialize(Class<?> type){
+      return CharSequence.class.isAssignableFrom(type) || Enum.class.isAssignableFrom(type);
     }
 
-    public String serializeObject(Object obj){
-      String result = obj.toString();
-      if(escapeChar){
-        StringBuilder builder = new StringBuilder();
-        for(int i = 0; i < result.length(); i++){
-          char c = result.charAt(i);
-          if(c == '"' || c == '\\') builder.append("\\");
-          
-          builder.append(c == '\t' ? "\\t" : c);
-        }
-
-        result = builder.toString();
-      }
-
-      return QUOTE + result + QUOTE;
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      out.write(QUOTE).writeText(obj.toString()).write(QUOTE);
     }
 
   }
 
-  private class DateSerializer implements Serializer{
+  private static class DateSerializer implements Serializer{
 
-    public boolean canSerialize(Object obj){
-      return obj instanceof Date;
+    public boolean canSerialize(Class<?> type){
+      return DateFormats.isDate(type);
     }
 
-    public String serializeObject(Object obj){
-      DateFormat format = new SimpleDateFormat(dateFormat);
-      return QUOTE + format.format(obj) + QUOTE;
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      if(out.settings.epochMillis){
+        out.writeNumber(DateFormats.toMillis(obj));
+        return;
+      }
+
+      out.write(QUOTE).writeText(DateFormats.format(obj, out.settings.dateFormat)).write(QUOTE);
     }
 
   }
 
-  private class CollectionArraySerializer extends ObjectSerializer{
+  private static class CollectionArraySerializer extends ObjectSerializer{
 
-    public boolean canSerialize(Object obj){
-      return obj != null && obj.getClass().isArray() || obj instanceof Collection;
+    public boolean canSerialize(Class<?> type){
+      return type.isArray() || Collection.class.isAssignableFrom(type);
     }
 
-    public String serializeObject(Object obj){
-      StringBuilder result = new StringBuilder();
-      beforeSerialize(obj, result);
-      int length = result.length();
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      beforeSerialize(obj, out);
 
-      serializeArray(obj, result);
-      serializeCollection(obj, result);
+      if(!serializeParallel(obj, out)){
+        serializeArray(obj, out);
+        serializeCollection(obj, out);
+      }
 
-      if(result.length() != length) super.afterSerializeAttrs(result);
+      afterSerialize(obj, out);
+    }
+
+    /**
+     * 元素个数达到parallelThreshold的List/对象数组:按段在ForkJoinPool中序列化到各自的缓冲,
+     * 再按顺序写入,段之间补上分隔符,输出与顺序序列化相同。每次只并行一批段以限制缓冲占用的内存
+     * 
+     * @param obj
+     * @param out
+     * @return 不满足条件时返回false
+     * @throws IOException
+     */
+    private boolean serializeParallel(Object obj, JsonWriter out) throws IOException{
+      int threshold = out.settings.parallelThreshold;
+      int parallelism = ForkJoinPool.getCommonPoolParallelism();
+      if(threshold <= 0 || parallelism < 2) return false;
+
+      List<?> elements = null;
+      if(obj instanceof Object[]) elements = Arrays.asList((Object[]) obj);
+      else if(obj instanceof List && obj instanceof RandomAccess) elements = (List<?>) obj;
+      if(elements == null || elements.size() < threshold) return false;
+
+      int size = elements.size();
+      int batch = PARALLEL_CHUNK * parallelism * 2;
+      boolean written = false;
+      for(int from = 0; from < size; from += batch){
+        int to = Math.min(from + batch, size);
+        List<ChunkTask> tasks = new ArrayList<ChunkTask>();
+        for(int i = from; i < to; i += PARALLEL_CHUNK){
+          tasks.add(new ChunkTask(elements, i, Math.min(i + PARALLEL_CHUNK, to), out));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        for(ChunkTask task : tasks){
+          if(task.result.length() == 0) continue;
+
+          if(written) beforeSerializeAttr(out, 1);
+          out.write(task.result);
+          written = true;
+        }
+      }
 
-      afterSerialize(obj, result);
-      return result.toString();
+      return true;
     }
 
-    private void serializeArray(Object obj, StringBuilder content){
-      if(!obj.getClass().isArray()) return;
+    private void serializeArray(Object obj, JsonWriter out) throws IOException{
+      Class<?> component = obj.getClass().getComponentType();
+      if(component == null) return;
+      if(component.isPrimitive()){
+        serializePrimitiveArray(obj, component, out);
+        return;
+      }
 
+      int count = 0;
       Object[] objs = (Object[]) obj;
       for(Object temp : objs){
-        if(temp == null && ignoreNull) continue;
+        if(temp == null && out.settings.ignoreNull) continue;
 
-        content.append(serialize(temp));
-        afterSerializeAttr(temp, content);
+        serializeElement(temp, out, count++);
       }
     }
 
-    private void serializeCollection(Object obj, StringBuilder content){
+    /**
+     * 基本类型数组直接写入各元素,不装箱。char数组的元素写为字符串
+     * 
+     * @param obj
+     * @param component
+     * @param out
+     * @throws IOException
+     */
+    private void serializePrimitiveArray(Object obj, Class<?> component, JsonWriter out)
+        throws IOException{
+      if(component == int.class){
+        int[] array = (int[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.writeNumber(array[i]);
+        }
+      }else if(component == long.class){
+        long[] array = (long[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.writeNumber(array[i]);
+        }
+      }else if(component == double.class){
+        double[] array = (double[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.write(Double.toString(array[i]));
+        }
+      }else if(component == float.class){
+        float[] array = (float[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.write(Float.toString(array[i]));
+        }
+      }else if(component == boolean.class){
+        boolean[] array = (boolean[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.write(array[i] ? "true" : "false");
+        }
+      }else if(component == byte.class){
+        byte[] array = (byte[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.writeNumber(array[i]);
+        }
+      }else if(component == short.class){
+        short[] array = (short[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.writeNumber(array[i]);
+        }
+      }else{
+        char[] array = (char[]) obj;
+        for(int i = 0; i < array.length; i++){
+          beforeSerializeAttr(out, i);
+          out.write(QUOTE).writeText(String.valueOf(array[i])).write(QUOTE);
+        }
+      }
+    }
+
+    private void serializeCollection(Object obj, JsonWriter out) throws IOException{
       if(!(obj instanceof Collection)) return;
 
+      int count = 0;
       Collection<Object> collec = (Collection<Object>) obj;
       for(Object temp : collec){
-        if(temp == null && ignoreNull) continue;
+        if(temp == null && out.settings.ignoreNull) continue;
 
-        content.append(serialize(temp));
-        afterSerializeAttr(temp, content);
+        serializeElement(temp, out, count++);
       }
     }
 
-    void beforeSerialize(Object obj, StringBuilder content){
-      appIndent(content);
-      content.append('[');
-      appSeparator(content);
-      depth++;
+    /**
+     * 序列化单个元素,非简单类型的元素需要缩进
+     * 
+     * @param element
+     * @param out
+     * @param index
+     * @throws IOException
+     */
+    private void serializeElement(Object element, JsonWriter out, int index) throws IOException{
+      beforeSerializeAttr(out, index);
+      if(element != null && !isPrimitive(element)) appIndent(out);
+
+      serialize(element, out);
     }
 
-    void afterSerialize(Object obj, StringBuilder content){
-      depth--;
-      appSeparator(content);
-      appIndent(content);
-      content.append(']');
-      appSeparator(content);
+    void beforeSerialize(Object obj, JsonWriter out) throws IOException{
+      out.write('[');
+      appSeparator(out);
+      out.depth++;
     }
 
-  }
+    void afterSerialize(Object obj, JsonWriter out) throws IOException{
+      out.depth--;
+      appSeparator(out);
+      appIndent(out);
+      out.write(']');
+    }
 
-  private class MapSerializer extends ObjectSerializer{
+    /**
+     * 以与out相同的配置和深度序列化[from, to)的元素,第一个写入的元素前没有分隔符
+     */
+    private final class ChunkTask extends RecursiveAction{
+      private static final long serialVersionUID = 1L;
+
+      private final List<?> elements;
+      private final int from;
+      private final int to;
+      private final JsonSerializer.Settings settings;
+      private final int depth;
+      final StringBuilder result = new StringBuilder();
+
+      ChunkTask(List<?> elements, int from, int to, JsonWriter out){
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.settings = out.settings;
+        this.depth = out.depth;
+      }
 
-    public boolean canSerialize(Object obj){
-      return obj instanceof Map;
+      protected void compute(){
+        JsonWriter out = new JsonWriter(result, settings);
+        out.depth = depth;
+        try{
+          int count = 0;
+          for(int i = from; i < to; i++){
+            Object temp = elements.get(i);
+            if(temp == null && settings.ignoreNull) continue;
+
+            serializeElement(temp, out, count++);
+          }
+          out.flushBuffer();
+        }catch(IOException e){
+          // StringBuilder不会抛出IOException
+          throw new RuntimeException(e);
+        }
+      }
     }
 
-    public String serializeObject(Object obj){
-      StringBuilder result = new StringBuilder();
-      beforeSerialize(obj, result);
+  }
 
-      int length = result.length();
-      super.serializeAttrs(obj, result);
+  private static class MapSerializer extends ObjectSerializer{
 
-      serializeAttrs(obj, result);
-      if(result.length() != length) afterSerializeAttrs(result);
+    public boolean canSerialize(Class<?> type){
+      return Map.class.isAssignableFrom(type);
+    }
 
-      afterSerialize(obj, result);
-      return result.toString();
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      beforeSerialize(obj, out);
+
+      int count = super.serializeAttrs(obj, out, 0);
+      serializeAttrs(obj, out, count);
+
+      afterSerialize(obj, out);
     }
 
-    void serializeAttrs(Object obj, StringBuilder content){
+    int serializeAttrs(Object obj, JsonWriter out, int count) throws IOException{
       Map<String, Object> map = (Map<String, Object>) obj;
-      Object lastValue = null;
       for(Map.Entry<String, Object> entry : map.entrySet()){
-        if(entry.getValue() == null && ignoreNull) continue;
+        if(entry.getValue() == null && out.settings.ignoreNull) continue;
 
-        appIndent(content);
-        lastValue = entry.getValue();
-        content.append(QUOTE).append(entry.getKey()).append(QUOTE).append(':');
-        content.append(trimLeft(serialize(lastValue)));
-        afterSerializeAttr(lastValue, content);
+        serializeAttr(String.valueOf(entry.getKey()), entry.getValue(), out, count++);
       }
 
+      return count;
     }
 
   }
 
-  private class ObjectSerializer implements Serializer{
+  /**
+   * 类的可序列化属性,子类属性在前,父类属性在后
+   */
+  private static final class ClassFields{
     private static final String EXCLUDE_PACAKGE = "java";
 
-    public boolean canSerialize(Object obj){
-      return obj != null;
+    final FieldInfo[] fields;
+    // 本类声明的属性个数
+    final int declaredCount;
+
+    ClassFields(Class<?> type, boolean generate){
+      Map<String, Method> getters = generate ? getters(type) : Collections.<String, Method> emptyMap();
+      List<FieldInfo> list = new ArrayList<FieldInfo>();
+      int count = -1;
+      for(Class<?> clazz = type; !clazz.getName().startsWith(EXCLUDE_PACAKGE); clazz = clazz
+          .getSuperclass()){
+        for(Field field : clazz.getDeclaredFields()){
+          if(Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) continue;
+
+          list.add(new FieldInfo(field, getters.get(field.getName())));
+        }
+
+        if(count < 0) count = list.size();
+      }
+
+      this.fields = list.toArray(new FieldInfo[list.size()]);
+      this.declaredCount = Math.max(count, 0);
+    }
+
+    private static Map<String, Method> getters(Class<?> type){
+      Map<String, Method> getters = new HashMap<String, Method>();
+      try{
+        for(PropertyDescriptor pd : Introspector.getBeanInfo(type).getPropertyDescriptors()){
+          if(pd.getReadMethod() != null) getters.put(pd.getName(), pd.getReadMethod());
+        }
+      }catch(IntrospectionException e){
+        // 无法获取getter时读取属性
+      }
+
+      return getters;
+    }
+  }
+
+  private static final class ClassFieldsValue extends ClassValue<ClassFields>{
+    private final boolean generate;
+
+    ClassFieldsValue(boolean generate){
+      this.generate = generate;
+    }
+
+    protected ClassFields computeValue(Class<?> type){
+      return new ClassFields(type, generate);
     }
+  }
+
+  private static final class FieldInfo{
+    final Accessor accessor;
+    final String name;
+    // 预先拼接的 "name":
+    final String quotedName;
+
+    /**
+     * getter不为null且与属性类型相同时使用生成的读取代码
+     * 
+     * @param field
+     * @param getter
+     */
+    FieldInfo(Field field, Method getter){
+      Accessor generated = null;
+      if(getter != null && getter.getReturnType() == field.getType()){
+        generated = CodecGenerator.getter(getter);
+      }
 
-    public String serializeObject(Object obj){
-      StringBuilder result = new StringBuilder();
-      beforeSerialize(obj, result);
+      try{
+        if(generated == null) field.setAccessible(true);
+        this.accessor = generated != null ? generated : Accessor.getter(field);
+      }catch(IllegalAccessException e){
+        throw new RuntimeException("can't access " + field, e);
+      }
+      this.name = field.getName();
+      this.quotedName = QUOTE + name + QUOTE + ':';
+    }
+  }
 
-      int length = result.length();
-      serializeAttrs(obj, result);
+  private static class ObjectSerializer implements Serializer{
 
-      if(result.length() != length) afterSerializeAttrs(result);
+    public boolean canSerialize(Class<?> type){
+      return true;
+    }
 
-      afterSerialize(obj, result);
-      return result.toString();
+    public void serializeObject(Object obj, JsonWriter out) throws IOException{
+      beforeSerialize(obj, out);
+      serializeAttrs(obj, out, 0);
+      afterSerialize(obj, out);
     }
 
     /**
      * 序列化对象前调用
      * 
      * @param obj
-     * @param content
+     * @param out
+     * @throws IOException
      */
-    void beforeSerialize(Object obj, StringBuilder content){
-      appIndent(content);
-      content.append("{");
-      appSeparator(content);
-      depth++;
+    void beforeSerialize(Object obj, JsonWriter out) throws IOException{
+      out.write('{');
+      appSeparator(out);
+      out.depth++;
     }
 
     /**
      * 序列化对象后调用
      * 
      * @param obj
-     * @param content
+     * @param out
+     * @throws IOException
      */
-    void afterSerialize(Object obj, StringBuilder content){
-      depth--;
-      appSeparator(content);
-      appIndent(content);
-      content.append("}");
-      appSeparator(content);
+    void afterSerialize(Object obj, JsonWriter out) throws IOException{
+      out.depth--;
+      appSeparator(out);
+      appIndent(out);
+      out.write('}');
     }
 
     /**
-     * 序列化所有属性后调用
+     * 序列化单个属性前调用,非第一个属性前写入','
      * 
-     * @param content
+     * @param out
+     * @param index
+     * @throws IOException
      */
-    void afterSerializeAttrs(StringBuilder content){
-      if(indent == null) content.deleteCharAt(content.length() - 1);
-      else
-        // 1个换行符 1个','
-        content.delete(content.length() - 2, content.length());
+    void beforeSerializeAttr(JsonWriter out, int index) throws IOException{
+      if(index == 0) return;
+
+      out.write(',');
+      appSeparator(out);
     }
 
     /**
-     * 序列化单个属性后调用
+     * 序列化单个属性
      * 
-     * @param field
-     * @param content
+     * @param name
+     * @param value
+     * @param out
+     * @param index 已写入的属性个数
+     * @throws IOException
      */
-    void afterSerializeAttr(Object field, StringBuilder content){
-      if(indent == null || field == null || isPrimitive(field)){
-        content.append(',');
-        appSeparator(content);
-      }else{
-        content.insert(content.length() - 1, ',');
-      }
+    void serializeAttr(String name, Object value, JsonWriter out, int index) throws IOException{
+      serializeName(name, out, index);
+      serialize(value, out);
+    }
+
+    private void serializeName(String name, JsonWriter out, int index) throws IOException{
+      beforeSerializeAttr(out, index);
+      appIndent(out);
+      out.write(QUOTE).writeText(name).write(QUOTE).write(':');
     }
 
     /**
-     * 序列化所有属性
+     * 序列化所有属性,返回已写入的属性个数
      * 
      * @param obj
-     * @param content
+     * @param out
+     * @param count 已写入的属性个数
+     * @return
+     * @throws IOException
      */
-    void serializeAttrs(Object obj, StringBuilder content){
-      Class<?> clazz = obj.getClass();
-      while(!clazz.getName().startsWith(EXCLUDE_PACAKGE) && !ignoreParentAttr){
-        serializeAttrs(obj, content, clazz);
-
-        clazz = clazz.getSuperclass();
+    int serializeAttrs(Object obj, JsonWriter out, int count) throws IOException{
+      // 编译期生成的codec总是包含父类属性
+      Settings settings = out.settings;
+      JsonCodec<Object> codec = settings.ignoreParentAttr ? null : CodecGenerator.compiled(obj
+          .getClass());
+      if(codec != null){
+        CodecWriter writer = new CodecWriter(out, count);
+        codec.writeProperties(obj, writer);
+        return writer.count;
       }
-    }
 
-    private void serializeAttrs(Object obj, StringBuilder content, Class<?> clazz){
-      try{
-        Field[] fields = clazz.getDeclaredFields();
-        for(Field field : fields){
-          if(Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) continue;
+      ClassFields classFields = (settings.generateCodec ? GENERATED_FIELDS : CLASS_FIELDS).get(obj
+          .getClass());
+      int length = settings.ignoreParentAttr ? classFields.declaredCount : classFields.fields.length;
+      for(int i = 0; i < length; i++){
+        FieldInfo field = classFields.fields[i];
+        Accessor accessor = field.accessor;
+        if(accessor.kind != Accessor.OBJECT){
+          serializeFieldName(field, out, count++);
+          serializePrimitive(accessor, obj, out);
+          continue;
+        }
 
-          Object fieldValue = null;
-          boolean access = field.isAccessible();
-          field.setAccessible(true);
-          fieldValue = field.get(obj);
-          field.setAccessible(access);
+        Object fieldValue = accessor.get(obj);
+        if(fieldValue == null && settings.ignoreNull) continue;
 
-          if(fieldValue == null && ignoreNull) continue;
+        serializeFieldName(field, out, count++);
+        serialize(fieldValue, out);
+      }
 
-          appIndent(content);
-          content.append(QUOTE).append(field.getName()).append(QUOTE).append(':');
-          content.append(trimLeft(serialize(fieldValue)));
-          afterSerializeAttr(fieldValue, content);
-        }
+      return count;
+    }
 
-      }catch(Exception e){
-        e.printStackTrace();
-      }
+    private void serializeFieldName(FieldInfo field, JsonWriter out, int index) throws IOException{
+      beforeSerializeAttr(out, index);
+      appIndent(out);
+      if(out.settings.unicode) out.write(QUOTE).writeText(field.name).write(QUOTE).write(':');
+      else
+        out.write(field.quotedName);
     }
 
-    public String serialize(Object obj){
-      String result = null;
-      for(Serializer serializer : serializers){
-        if(serializer.canSerialize(obj)){
-          result = serializer.serializeObject(obj);
-          break;
-        }
+    /**
+     * 基本类型属性直接读取并写入,不装箱
+     * 
+     * @param accessor
+     * @param obj
+     * @param out
+     * @throws IOException
+     */
+    private void serializePrimitive(Accessor accessor, Object obj, JsonWriter out)
+        throws IOException{
+      switch(accessor.kind){
+      case Accessor.INT:
+        out.writeNumber(accessor.getInt(obj));
+        break;
+      case Accessor.LONG:
+        out.writeNumber(accessor.getLong(obj));
+        break;
+      case Accessor.DOUBLE:
+        out.write(Double.toString(accessor.getDouble(obj)));
+        break;
+      default:
+        out.write(accessor.getBoolean(obj) ? "true" : "false");
+        break;
       }
+    }
 
-      return result;
+    public void serialize(Object obj, JsonWriter out) throws IOException{
+      Serializer serializer = obj == null ? NULL : DISPATCH.get(obj.getClass());
+      serializer.serializeObject(obj, out);
     }
 
-    protected void appIndent(StringBuilder content){
-      if(indent == null) return;
+    protected void appIndent(JsonWriter out) throws IOException{
+      String[] indents = out.settings.indents;
+      if(indents == null) return;
 
-      for(int i = 1; i < depth; i++){
-        content.append(indent);
+      // 超出缓存的层级由多段缓存的缩进拼接
+      int level = out.depth - 1;
+      int last = indents.length - 1;
+      for(; level > last; level -= last){
+        out.write(indents[last]);
       }
+      out.write(indents[level]);
     }
 
-    protected void appSeparator(StringBuilder content){
-      if(indent == null) return;
+    protected void appSeparator(JsonWriter out) throws IOException{
+      if(out.settings.indents == null) return;
 
-      content.append(separator);
+      out.write(separator);
     }
 
-    private boolean isPrimitive(Object obj){
+    boolean isPrimitive(Object obj){
       return obj instanceof Boolean || obj instanceof Number || obj instanceof CharSequence
-          || obj instanceof Date || obj instanceof Enum;
+          || obj instanceof Enum || DateFormats.isDate(obj.getClass());
+    }
+
+    /**
+     * 接收编译期生成的codec写入的属性
+     */
+    private final class CodecWriter implements JsonCodec.PropertyWriter{
+      private final JsonWriter out;
+      // 已写入的属性个数
+      int count;
+
+      CodecWriter(JsonWriter out, int count){
+        this.out = out;
+        this.count = count;
+      }
+
+      public void writeInt(String name, int value) throws IOException{
+        serializeName(name, out, count++);
+        out.writeNumber(value);
+      }
+
+      public void writeLong(String name, long value) throws IOException{
+        serializeName(name, out, count++);
+        out.writeNumber(value);
+      }
+
+      public void writeDouble(String name, double value) throws IOException{
+        serializeName(name, out, count++);
+        out.write(Double.toString(value));
+      }
+
+      public void writeBoolean(String name, boolean value) throws IOException{
+        serializeName(name, out, count++);
+        out.write(value ? "true" : "false");
+      }
+
+      public void writeObject(String name, Object value) throws IOException{
+        if(value == null && out.settings.ignoreNull) return;
+
+        serializeName(name, out, count++);
+        serialize(value, out);
+      }
     }
 
   }
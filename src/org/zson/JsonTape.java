@@ -0,0 +1,430 @@
+package org.zson;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 紧凑的只读json文档:所有节点按文档顺序存放在一个long数组中,字符串内容存放在一个char数组中,
+ * 解析时不为节点创建对象。每个元素高8位为类型,低56位为内容:
+ *
+ * <pre>
+ * OBJECT/ARRAY   对应END的下标
+ * END            子节点(属性)个数
+ * FIELD/STRING   字符串在chars中的起始位置,下一个元素为长度
+ * LONG/DOUBLE    下一个元素为数值(double为其bit)
+ * BIG_NUMBER     同STRING,内容为数字原文
+ * </pre>
+ *
+ * 访问时创建的{@link Json}节点只是指向下标的视图
+ *
+ * @author zhou
+ *
+ */
+final class JsonTape{
+  private static final int OBJECT = 1;
+  private static final int ARRAY = 2;
+  private static final int END = 3;
+  private static final int FIELD = 4;
+  private static final int STRING = 5;
+  private static final int LONG = 6;
+  private static final int DOUBLE = 7;
+  private static final int BIG_NUMBER = 8;
+  private static final int TRUE = 9;
+  private static final int FALSE = 10;
+  private static final int NULL = 11;
+
+  private static final int TYPE_SHIFT = 56;
+  private static final long PAYLOAD_MASK = (1L << TYPE_SHIFT) - 1;
+
+  private long[] tape = new long[64];
+  private int size;
+  private char[] chars = new char[256];
+  private int charLength;
+
+  private JsonTape(){
+  }
+
+  /**
+   * 读取parser中的所有token
+   *
+   * @param parser
+   * @return 输入为空时返回空节点
+   * @throws IOException
+   */
+  static Json parse(JsonParser parser) throws IOException{
+    JsonToken token = parser.nextToken();
+    if(token == null) return new Json();
+
+    JsonTape tape = new JsonTape();
+    tape.build(parser, token);
+    tape.tape = Arrays.copyOf(tape.tape, tape.size);
+    tape.chars = Arrays.copyOf(tape.chars, tape.charLength);
+    return tape.node(0);
+  }
+
+  private void build(JsonParser parser, JsonToken token) throws IOException{
+    // 未结束的容器在tape中的下标及其子节点个数
+    int[] starts = new int[16];
+    int[] counts = new int[16];
+    int depth = 0;
+    do{
+      if(depth > 0 && token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+          && token != JsonToken.FIELD_NAME) counts[depth - 1]++;
+
+      switch(token){
+      case START_OBJECT:
+      case START_ARRAY:
+        if(depth == starts.length){
+          starts = Arrays.copyOf(starts, depth << 1);
+          counts = Arrays.copyOf(counts, depth << 1);
+        }
+        starts[depth] = size;
+        counts[depth++] = 0;
+        append(token == JsonToken.START_OBJECT ? OBJECT : ARRAY, 0);
+        break;
+      case END_OBJECT:
+      case END_ARRAY:
+        depth--;
+        tape[starts[depth]] |= size;
+        append(END, counts[depth]);
+        break;
+      case FIELD_NAME:
+        String name = parser.getText();
+        ensureChars(name.length());
+        name.getChars(0, name.length(), chars, charLength);
+        appendText(FIELD, name.length());
+        break;
+      case VALUE_STRING:
+        appendText(STRING, parser);
+        break;
+      case VALUE_NUMBER:
+        appendNumber(parser);
+        break;
+      case VALUE_TRUE:
+        append(TRUE, 0);
+        break;
+      case VALUE_FALSE:
+        append(FALSE, 0);
+        break;
+      default:
+        append(NULL, 0);
+        break;
+      }
+    }while(depth > 0 && (token = parser.nextToken()) != null);
+  }
+
+  private void appendNumber(JsonParser parser) throws IOException{
+    switch(parser.getNumberType()){
+    case JsonParser.NUMBER_LONG:
+      append(LONG, 0);
+      append(0, parser.getLongValue());
+      break;
+    case JsonParser.NUMBER_DOUBLE:
+      double value = parser.getDoubleValue();
+      if(Double.isInfinite(value)){
+        // 超出double范围时保存原文
+        appendText(BIG_NUMBER, parser);
+      }else{
+        append(DOUBLE, 0);
+        append(0, Double.doubleToRawLongBits(value));
+      }
+      break;
+    default:
+      appendText(BIG_NUMBER, parser);
+      break;
+    }
+  }
+
+  private void append(int type, long payload){
+    if(size == tape.length) tape = Arrays.copyOf(tape, size << 1);
+
+    tape[size++] = ((long) type << TYPE_SHIFT) | payload;
+  }
+
+  private void appendText(int type, JsonParser parser) throws IOException{
+    char[] text = parser.getTextCharacters();
+    int length = parser.getTextLength();
+    ensureChars(length);
+    System.arraycopy(text, 0, chars, charLength, length);
+    appendText(type, length);
+  }
+
+  /**
+   * chars中charLength之后已写入length个字符
+   *
+   * @param type
+   * @param length
+   */
+  private void appendText(int type, int length){
+    append(type, charLength);
+    append(0, length);
+    charLength += length;
+  }
+
+  private void ensureChars(int length){
+    if(charLength + length > chars.length){
+      chars = Arrays.copyOf(chars, Math.max(chars.length << 1, charLength + length));
+    }
+  }
+
+  private int type(int index){
+    return (int) (tape[index] >>> TYPE_SHIFT);
+  }
+
+  private int payload(int index){
+    return (int) (tape[index] & PAYLOAD_MASK);
+  }
+
+  private String text(int index){
+    return new String(chars, payload(index), (int) tape[index + 1]);
+  }
+
+  /**
+   * index处节点之后的下一个节点
+   *
+   * @param index
+   * @return
+   */
+  private int next(int index){
+    switch(type(index)){
+    case OBJECT:
+    case ARRAY:
+      return payload(index) + 1;
+    case FIELD:
+    case STRING:
+    case LONG:
+    case DOUBLE:
+    case BIG_NUMBER:
+      return index + 2;
+    default:
+      return index + 1;
+    }
+  }
+
+  private Json node(int index){
+    return new Node(index);
+  }
+
+  /**
+   * 指向tape中某个节点的视图
+   */
+  private final class Node extends Json{
+    private final int index;
+
+    Node(int index){
+      this.index = index;
+    }
+
+    public boolean isArray(){
+      return type(index) == ARRAY && payload(payload(index)) != 0;
+    }
+
+    public boolean isObject(){
+      return type(index) == OBJECT && payload(payload(index)) != 0;
+    }
+
+    public boolean isNull(){
+      int type = type(index);
+      return type == OBJECT || type == ARRAY || type == NULL;
+    }
+
+    public List<Json> getArray(){
+      if(type(index) != ARRAY) return null;
+      if(arrays == null) arrays = new ArrayView(index);
+
+      return arrays;
+    }
+
+    public Map<String, Json> getObject(){
+      if(type(index) != OBJECT) return null;
+      if(obj == null) obj = new ObjectView(index);
+
+      return obj;
+    }
+
+    public Object getValue(){
+      switch(type(index)){
+      case STRING:
+        return text(index);
+      case LONG:
+        return tape[index + 1];
+      case DOUBLE:
+        return Double.longBitsToDouble(tape[index + 1]);
+      case BIG_NUMBER:
+        String number = text(index);
+        try{
+          return new BigInteger(number);
+        }catch(NumberFormatException e){
+          return new BigDecimal(number);
+        }
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      default:
+        return null;
+      }
+    }
+
+    public String getDataAsString(){
+      return type(index) == STRING ? text(index) : super.getDataAsString();
+    }
+
+    public int getDataAsInteger(){
+      // 超出int范围时由Integer.parseInt抛出异常
+      if(type(index) == LONG && tape[index + 1] == (int) tape[index + 1]) return (int) tape[index + 1];
+
+      return super.getDataAsInteger();
+    }
+
+    public long getDataAsLong(){
+      return type(index) == LONG ? tape[index + 1] : super.getDataAsLong();
+    }
+
+    public double getDataAsDouble(){
+      int type = type(index);
+      if(type == DOUBLE) return Double.longBitsToDouble(tape[index + 1]);
+      if(type == LONG) return tape[index + 1];
+
+      return super.getDataAsDouble();
+    }
+
+    public boolean getDataAsBoolean(){
+      int type = type(index);
+      if(type == TRUE || type == FALSE) return type == TRUE;
+
+      return super.getDataAsBoolean();
+    }
+  }
+
+  /**
+   * 数组节点的子节点列表,创建时记录各子节点的下标,子节点第一次访问时创建后复用
+   */
+  private final class ArrayView extends AbstractList<Json>{
+    private final int[] children;
+    private final Json[] nodes;
+
+    ArrayView(int start){
+      int end = payload(start);
+      this.children = new int[payload(end)];
+      this.nodes = new Json[children.length];
+      for(int i = start + 1, n = 0; i < end; i = next(i)){
+        children[n++] = i;
+      }
+    }
+
+    public Json get(int index){
+      Json node = nodes[index];
+      if(node == null) node = nodes[index] = node(children[index]);
+
+      return node;
+    }
+
+    public int size(){
+      return children.length;
+    }
+  }
+
+  /**
+   * 对象节点的属性,第一次访问时建立键名索引。与Json.from一致,重复的键名只保留最后一个值,
+   * 遍历时按键名第一次出现的顺序
+   */
+  private final class ObjectView extends AbstractMap<String, Json>{
+    private final int start;
+    // 去重后各属性的下标及键名到下标位置的映射,第一次访问时计算
+    private int[] fields;
+    private Map<String, Integer> slots;
+    // 已访问过的属性值
+    private Json[] values;
+
+    ObjectView(int start){
+      this.start = start;
+    }
+
+    public int size(){
+      return fields().length;
+    }
+
+    public Json get(Object key){
+      fields();
+      Integer slot = slots.get(key);
+      return slot == null ? null : value(slot);
+    }
+
+    private int[] fields(){
+      if(fields != null) return fields;
+
+      int end = payload(start);
+      int[] result = new int[payload(end)];
+      int count = 0;
+      slots = new HashMap<String, Integer>();
+      for(int i = start + 1; i < end; i = next(i + 2)){
+        String name = text(i);
+        Integer slot = slots.get(name);
+        if(slot == null){
+          slots.put(name, count);
+          result[count++] = i;
+        }else{
+          result[slot] = i;
+        }
+      }
+
+      values = new Json[count];
+      return fields = Arrays.copyOf(result, count);
+    }
+
+    private Json value(int slot){
+      Json value = values[slot];
+      if(value == null) value = values[slot] = node(fields[slot] + 2);
+
+      return value;
+    }
+
+    public boolean containsKey(Object key){
+      return get(key) != null;
+    }
+
+    public Set<Map.Entry<String, Json>> entrySet(){
+      return new AbstractSet<Map.Entry<String, Json>>(){
+        public int size(){
+          return ObjectView.this.size();
+        }
+
+        public Iterator<Map.Entry<String, Json>> iterator(){
+          return new Iterator<Map.Entry<String, Json>>(){
+            private final int[] fields = fields();
+            private int index;
+
+            public boolean hasNext(){
+              return index < fields.length;
+            }
+
+            public Map.Entry<String, Json> next(){
+              if(index >= fields.length) throw new NoSuchElementException();
+
+              int slot = index++;
+              return new AbstractMap.SimpleImmutableEntry<String, Json>(text(fields[slot]),
+                  value(slot));
+            }
+
+            public void remove(){
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
+    }
+  }
+
+}
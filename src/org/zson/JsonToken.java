@@ -0,0 +1,36 @@
+package org.zson;
+
+/**
+ * 流式解析得到的token类型
+ *
+ * @author zhou
+ *
+ */
+public enum JsonToken{
+  START_OBJECT("{"),
+  END_OBJECT("}"),
+  START_ARRAY("["),
+  END_ARRAY("]"),
+  FIELD_NAME(null),
+  VALUE_STRING(null),
+  VALUE_NUMBER(null),
+  VALUE_TRUE("true"),
+  VALUE_FALSE("false"),
+  VALUE_NULL("null");
+
+  final String text;
+
+  private JsonToken(String text){
+    this.text = text;
+  }
+
+  /**
+   * 是否为简单值(字符串/数字/布尔/null)
+   *
+   * @return
+   */
+  public boolean isScalarValue(){
+    return ordinal() >= VALUE_STRING.ordinal();
+  }
+
+}
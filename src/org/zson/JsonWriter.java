@@ -0,0 +1,197 @@
+package org.zson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * 带缓冲的json输出,序列化时直接写入目标而不生成中间字符串。
+ * 每次序列化调用创建一个实例,同时保存本次调用的配置和嵌套深度
+ *
+ * @author zhou
+ *
+ */
+final class JsonWriter{
+  private static final int BUFFER_SIZE = 8192;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  // ASCII字符的转义:0不转义,'u'为\\u00XX,其他为'\\'后的字符
+  private static final char[] ESCAPES = new char[128];
+
+  static{
+    for(int i = 0; i < ' '; i++){
+      ESCAPES[i] = 'u';
+    }
+    ESCAPES['\b'] = 'b';
+    ESCAPES['\f'] = 'f';
+    ESCAPES['\n'] = 'n';
+    ESCAPES['\r'] = 'r';
+    ESCAPES['\t'] = 't';
+    ESCAPES['"'] = '"';
+    ESCAPES['\\'] = '\\';
+  }
+
+  private final Appendable out;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final boolean unicode;
+  private final boolean escape;
+  private int count;
+
+  // 本次调用使用的配置快照
+  final JsonSerializer.Settings settings;
+  // 当前嵌套深度,顶层为1
+  int depth = 1;
+
+  JsonWriter(Appendable out, JsonSerializer.Settings settings){
+    this.out = out;
+    this.settings = settings;
+    this.unicode = settings.unicode;
+    this.escape = settings.escapeChar;
+  }
+
+  JsonWriter write(char c) throws IOException{
+    if(count == buffer.length) flushBuffer();
+
+    buffer[count++] = c;
+    return this;
+  }
+
+  JsonWriter write(String str) throws IOException{
+    return write(str, 0, str.length());
+  }
+
+  JsonWriter write(String str, int start, int end) throws IOException{
+    int length = end - start;
+    if(length > buffer.length){
+      flushBuffer();
+      out.append(str, start, end);
+      return this;
+    }
+
+    if(count + length > buffer.length) flushBuffer();
+    str.getChars(start, end, buffer, count);
+    count += length;
+    return this;
+  }
+
+  /**
+   * 写入已生成的json片段
+   *
+   * @param text
+   * @return
+   * @throws IOException
+   */
+  JsonWriter write(StringBuilder text) throws IOException{
+    flushBuffer();
+    out.append(text);
+    return this;
+  }
+
+  /**
+   * 直接写入整数的各位数字,不生成字符串
+   *
+   * @param value
+   * @return
+   * @throws IOException
+   */
+  JsonWriter writeNumber(long value) throws IOException{
+    if(value == Long.MIN_VALUE) return write(Long.toString(value));
+    if(count + 20 > buffer.length) flushBuffer();
+
+    if(value < 0){
+      buffer[count++] = '-';
+      value = -value;
+    }
+
+    int digits = 1;
+    for(long temp = value; temp >= 10; temp /= 10){
+      digits++;
+    }
+
+    int index = count + digits;
+    do{
+      buffer[--index] = (char) ('0' + value % 10);
+      value /= 10;
+    }while(value != 0);
+    count += digits;
+    return this;
+  }
+
+  /**
+   * 写入字符串内容(键名/字符串值),一次遍历完成转义:启用escapeChar时转义引号、反斜杠和控制字符,
+   * 启用unicode时将码点在配置范围内的字符(包括代理对)写为\\uXXXX
+   *
+   * @param text
+   * @return
+   * @throws IOException
+   */
+  JsonWriter writeText(String text) throws IOException{
+    if(!escape && !unicode) return write(text);
+
+    int length = text.length();
+    int start = 0;
+    for(int i = 0; i < length; i++){
+      char c = text.charAt(i);
+      if(c < 128){
+        if(!escape || ESCAPES[c] == 0) continue;
+
+        write(text, start, i);
+        writeEscape(c);
+        start = i + 1;
+      }else if(unicode){
+        int next = i + 1;
+        int code = c;
+        if(Character.isHighSurrogate(c) && next < length && Character.isLowSurrogate(text.charAt(next))){
+          code = Character.toCodePoint(c, text.charAt(next++));
+        }
+        if(code >= settings.unicodeStart && code <= settings.unicodeEnd){
+          write(text, start, i);
+          for(int j = i; j < next; j++){
+            writeUnicode(text.charAt(j));
+          }
+          start = next;
+        }
+        i = next - 1;
+      }
+    }
+
+    return write(text, start, length);
+  }
+
+  private void writeEscape(char c) throws IOException{
+    char escaped = ESCAPES[c];
+    if(escaped == 'u'){
+      writeUnicode(c);
+      return;
+    }
+
+    if(count + 2 > buffer.length) flushBuffer();
+    buffer[count++] = '\\';
+    buffer[count++] = escaped;
+  }
+
+  private void writeUnicode(char c) throws IOException{
+    if(count + 6 > buffer.length) flushBuffer();
+    buffer[count++] = '\\';
+    buffer[count++] = 'u';
+    buffer[count++] = HEX[c >> 12];
+    buffer[count++] = HEX[(c >> 8) & 0xF];
+    buffer[count++] = HEX[(c >> 4) & 0xF];
+    buffer[count++] = HEX[c & 0xF];
+  }
+
+  /**
+   * 将缓冲内容写入目标
+   *
+   * @throws IOException
+   */
+  void flushBuffer() throws IOException{
+    if(count == 0) return;
+
+    if(out instanceof Writer) ((Writer) out).write(buffer, 0, count);
+    else if(out instanceof StringBuilder) ((StringBuilder) out).append(buffer, 0, count);
+    else
+      out.append(CharBuffer.wrap(buffer, 0, count));
+    count = 0;
+  }
+
+}
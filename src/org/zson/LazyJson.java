@@ -0,0 +1,324 @@
+package org.zson;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延迟解析的Json节点,只记录值在源字符串中的范围。
+ * 第一次访问getObject/getArray时只扫描本层,子节点仍为延迟节点;第一次访问简单值时才解析该值。
+ * 未访问的部分只做结构扫描,不做完整校验
+ *
+ * @author zhou
+ *
+ */
+final class LazyJson extends Json{
+  private final String source;
+  // 值在source中的范围[start, end)
+  private final int start;
+  private final int end;
+  private boolean parsed;
+
+  private LazyJson(String source, int start, int end){
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  static Json parse(String source){
+    int start = skipWhitespace(source, 0);
+    if(start == source.length()) return new Json();
+
+    int end = skipValue(source, start);
+    if(skipWhitespace(source, end) != source.length()) throw error("unexpected content", end);
+
+    return new LazyJson(source, start, end);
+  }
+
+  public List<Json> getArray(){
+    if(source.charAt(start) != '[') return null;
+    if(arrays == null) arrays = scanArray();
+
+    return arrays;
+  }
+
+  public Map<String, Json> getObject(){
+    if(source.charAt(start) != '{') return null;
+    if(obj == null) obj = scanObject();
+
+    return obj;
+  }
+
+  public Object getValue(){
+    char c = source.charAt(start);
+    if(c == '{' || c == '[') return null;
+
+    if(!parsed){
+      data = scalar();
+      parsed = true;
+    }
+
+    return data;
+  }
+
+  /**
+   * 直接从[start, end)解码简单值,不创建parser
+   *
+   * @return
+   */
+  private Object scalar(){
+    char c = source.charAt(start);
+    if(c == '"' || c == '\'') return text(start, end);
+    if(isLiteral("true")) return Boolean.TRUE;
+    if(isLiteral("false")) return Boolean.FALSE;
+    if(isLiteral("null")) return null;
+    if(c == '-' || isDigit(c)) return number(source.substring(start, end));
+
+    throw error("near " + source.substring(start, end), start);
+  }
+
+  private boolean isLiteral(String literal){
+    return end - start == literal.length() && source.startsWith(literal, start);
+  }
+
+  /**
+   * 与JsonParser一致:整数为Long,超出long范围为BigInteger;小数为Double,超出double范围为BigDecimal
+   *
+   * @param text
+   * @return
+   */
+  private Object number(String text){
+    int length = text.length();
+    int i = text.charAt(0) == '-' ? 1 : 0;
+    int digits = skipDigits(text, i);
+    if(digits == i || (text.charAt(i) == '0' && digits - i > 1)) throw invalidNumber(text);
+
+    boolean integral = true;
+    i = digits;
+    if(i < length && text.charAt(i) == '.'){
+      integral = false;
+      digits = skipDigits(text, ++i);
+      if(digits == i) throw invalidNumber(text);
+      i = digits;
+    }
+    if(i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')){
+      integral = false;
+      if(++i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+      digits = skipDigits(text, i);
+      if(digits == i) throw invalidNumber(text);
+      i = digits;
+    }
+    if(i != length) throw invalidNumber(text);
+
+    if(integral){
+      try{
+        return Long.parseLong(text);
+      }catch(NumberFormatException e){
+        return new BigInteger(text);
+      }
+    }
+
+    double value = Double.parseDouble(text);
+    return Double.isInfinite(value) ? new BigDecimal(text) : value;
+  }
+
+  private static int skipDigits(String text, int i){
+    while(i < text.length() && isDigit(text.charAt(i))){
+      i++;
+    }
+
+    return i;
+  }
+
+  private static boolean isDigit(char c){
+    return c >= '0' && c <= '9';
+  }
+
+  private RuntimeException invalidNumber(String text){
+    return error("invalid number " + text, start);
+  }
+
+  private List<Json> scanArray(){
+    List<Json> list = new ArrayList<Json>();
+    int i = skipWhitespace(source, start + 1);
+    if(source.charAt(i) == ']') return list;
+
+    while(true){
+      int valueEnd = skipValue(source, i);
+      list.add(new LazyJson(source, i, valueEnd));
+
+      i = skipWhitespace(source, valueEnd);
+      if(i < end && source.charAt(i) == ','){
+        i = skipWhitespace(source, i + 1);
+        continue;
+      }
+      if(i < end && source.charAt(i) == ']') return list;
+
+      throw error("expect ',' or ']'", i);
+    }
+  }
+
+  private Map<String, Json> scanObject(){
+    Map<String, Json> map = new HashMap<String, Json>();
+    int i = skipWhitespace(source, start + 1);
+    if(source.charAt(i) == '}') return map;
+
+    while(true){
+      char quote = source.charAt(i);
+      if(quote != '"' && quote != '\'') throw error("expect field name", i);
+
+      int keyEnd = skipString(source, i);
+      String key = text(i, keyEnd);
+      i = skipWhitespace(source, keyEnd);
+      if(i >= end || source.charAt(i) != ':') throw error("expect ':' after " + key, i);
+
+      i = skipWhitespace(source, i + 1);
+      int valueEnd = skipValue(source, i);
+      map.put(key, new LazyJson(source, i, valueEnd));
+
+      i = skipWhitespace(source, valueEnd);
+      if(i < end && source.charAt(i) == ','){
+        i = skipWhitespace(source, i + 1);
+        continue;
+      }
+      if(i < end && source.charAt(i) == '}') return map;
+
+      throw error("expect ',' or '}'", i);
+    }
+  }
+
+  /**
+   * 解码字符串,不含转义时直接截取
+   *
+   * @param from 开始引号位置
+   * @param to 结束引号之后的位置
+   * @return
+   */
+  private String text(int from, int to){
+    int last = to - 1;
+    int i = from + 1;
+    while(i < last && source.charAt(i) != '\\'){
+      i++;
+    }
+    if(i == last) return source.substring(from + 1, last);
+
+    StringBuilder text = new StringBuilder(last - from);
+    text.append(source, from + 1, i);
+    for(; i < last; i++){
+      char c = source.charAt(i);
+      if(c != '\\'){
+        text.append(c);
+        continue;
+      }
+
+      c = source.charAt(++i);
+      switch(c){
+      case 'b':
+        text.append('\b');
+        break;
+      case 'f':
+        text.append('\f');
+        break;
+      case 'n':
+        text.append('\n');
+        break;
+      case 'r':
+        text.append('\r');
+        break;
+      case 't':
+        text.append('\t');
+        break;
+      case 'u':
+        text.append(hex(i + 1, last));
+        i += 4;
+        break;
+      default:
+        text.append(c);
+        break;
+      }
+    }
+
+    return text.toString();
+  }
+
+  private char hex(int from, int last){
+    if(from + 4 > last) throw error("invalid unicode escape", from);
+
+    int code = 0;
+    for(int i = from; i < from + 4; i++){
+      int digit = Character.digit(source.charAt(i), 16);
+      if(digit < 0) throw error("invalid unicode escape", i);
+
+      code = (code << 4) | digit;
+    }
+
+    return (char) code;
+  }
+
+  static int skipWhitespace(String source, int i){
+    while(i < source.length() && source.charAt(i) <= ' '){
+      i++;
+    }
+
+    return i;
+  }
+
+  /**
+   * 略过从i开始的一个值,不解码
+   *
+   * @param source
+   * @param i
+   * @return 值之后的位置
+   */
+  static int skipValue(String source, int i){
+    if(i >= source.length()) throw error("unexpected end of input", i);
+
+    char c = source.charAt(i);
+    if(c == '"' || c == '\'') return skipString(source, i);
+
+    if(c == '{' || c == '['){
+      int depth = 0;
+      while(i < source.length()){
+        c = source.charAt(i);
+        if(c == '"' || c == '\''){
+          i = skipString(source, i);
+          continue;
+        }
+
+        if(c == '{' || c == '[') depth++;
+        else if(c == '}' || c == ']') depth--;
+        i++;
+        if(depth == 0) return i;
+      }
+
+      throw error("unexpected end of input", i);
+    }
+
+    int from = i;
+    while(i < source.length() && !JsonInput.isDelimiter(source.charAt(i))){
+      i++;
+    }
+    if(i == from) throw error("unexpected '" + c + "'", i);
+
+    return i;
+  }
+
+  private static int skipString(String source, int i){
+    char quote = source.charAt(i++);
+    while(i < source.length()){
+      char c = source.charAt(i++);
+      if(c == quote) return i;
+      if(c == '\\') i++;
+    }
+
+    throw error("unterminated string", i);
+  }
+
+  private static RuntimeException error(String message, int position){
+    return new RuntimeException("parse json error " + message + " at position " + position);
+  }
+
+}
@@ -0,0 +1,193 @@
+package org.zson;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 并行读取顶层数组:先做一次结构扫描找出各元素在源字符串中的范围,
+ * 再在ForkJoinPool中按段解析并绑定,每段使用独立的JsonParser,结果按原顺序合并
+ *
+ * @author zhou
+ *
+ */
+final class ParallelArrayReader{
+  // 小于该长度的源字符串不值得并行
+  private static final int PARALLEL_THRESHOLD = 256 * 1024;
+  // 每个任务至少解析的字符数
+  private static final int CHUNK_SIZE = 32 * 1024;
+
+  private final JsonDeserializer deserializer;
+  private final String source;
+  private final boolean unicode;
+  private final Type type;
+  // 元素类型,为null时按json结构读取
+  private final Type element;
+
+  // 各元素在source中的范围[starts[i], ends[i])
+  private int[] starts = new int[256];
+  private int[] ends = new int[256];
+  private int count;
+  private Object[] values;
+
+  ParallelArrayReader(JsonDeserializer deserializer, String source, boolean unicode, Type type){
+    this.deserializer = deserializer;
+    this.source = source;
+    this.unicode = unicode;
+    this.type = type;
+    this.element = elementType(type);
+  }
+
+  /**
+   * 有多个工作线程、源字符串足够大、顶层为数组且目标类型为数组或Collection
+   *
+   * @param source
+   * @param type
+   * @return
+   */
+  static boolean supports(String source, Type type){
+    if(ForkJoinPool.getCommonPoolParallelism() < 2) return false;
+    if(source.length() < PARALLEL_THRESHOLD) return false;
+
+    int start = LazyJson.skipWhitespace(source, 0);
+    if(start == source.length() || source.charAt(start) != '[') return false;
+
+    Class<?> raw = rawClass(type);
+    return raw != null && (raw.isArray() || JsonDeserializer.hasInterface(raw, Collection.class));
+  }
+
+  Object read() throws IOException{
+    scan();
+    values = new Object[count];
+    if(count > 0) ForkJoinPool.commonPool().invoke(new ParseTask(0, count));
+
+    Class<?> raw = rawClass(type);
+    if(raw.isArray()) return toArray(raw.getComponentType());
+
+    Collection<Object> result = JsonDeserializer.newCollection(raw);
+    result.addAll(Arrays.asList(values));
+    return result;
+  }
+
+  /**
+   * 记录顶层数组各元素的范围,只检查结构不解码
+   */
+  private void scan(){
+    int i = LazyJson.skipWhitespace(source, LazyJson.skipWhitespace(source, 0) + 1);
+    if(i < source.length() && source.charAt(i) == ']'){
+      checkEnd(i + 1);
+      return;
+    }
+
+    while(true){
+      int end = LazyJson.skipValue(source, i);
+      if(count == starts.length){
+        starts = Arrays.copyOf(starts, count << 1);
+        ends = Arrays.copyOf(ends, count << 1);
+      }
+      starts[count] = i;
+      ends[count++] = end;
+
+      i = LazyJson.skipWhitespace(source, end);
+      if(i < source.length() && source.charAt(i) == ','){
+        i = LazyJson.skipWhitespace(source, i + 1);
+        continue;
+      }
+      if(i < source.length() && source.charAt(i) == ']'){
+        checkEnd(i + 1);
+        return;
+      }
+
+      throw error("expect ',' or ']'", i);
+    }
+  }
+
+  private void checkEnd(int i){
+    i = LazyJson.skipWhitespace(source, i);
+    if(i != source.length()) throw error("unexpected content", i);
+  }
+
+  /**
+   * 解析[from, to)的元素:将该段包装为数组后顺序读取
+   *
+   * @param from
+   * @param to
+   * @throws IOException
+   */
+  private void parse(int from, int to) throws IOException{
+    int start = starts[from];
+    int end = ends[to - 1];
+    StringBuilder chunk = new StringBuilder(end - start + 2);
+    chunk.append('[').append(source, start, end).append(']');
+
+    JsonParser parser = new JsonParser(chunk.toString(), unicode);
+    parser.nextToken();
+    for(int i = from; i < to; i++){
+      values[i] = deserializer.readValue(parser, parser.nextToken(), element);
+    }
+  }
+
+  private Object toArray(Class<?> component){
+    Object array = Array.newInstance(component, count);
+    for(int i = 0; i < count; i++){
+      // 基本类型数组中的null保留默认值
+      if(values[i] != null || !component.isPrimitive()) Array.set(array, i, values[i]);
+    }
+
+    return array;
+  }
+
+  private static Class<?> rawClass(Type type){
+    if(type instanceof Class) return (Class<?>) type;
+    if(type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+
+    return null;
+  }
+
+  private static Type elementType(Type type){
+    if(type instanceof Class) return ((Class<?>) type).getComponentType();
+
+    Type[] types = ((ParameterizedType) type).getActualTypeArguments();
+    return types.length == 1 ? types[0] : null;
+  }
+
+  private static RuntimeException error(String message, int position){
+    return new RuntimeException("parse json error " + message + " at position " + position);
+  }
+
+  /**
+   * 元素范围的字符数超过CHUNK_SIZE时对半拆分
+   */
+  private final class ParseTask extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+
+    ParseTask(int from, int to){
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute(){
+      if(to - from > 1 && ends[to - 1] - starts[from] > CHUNK_SIZE){
+        int middle = (from + to) >>> 1;
+        invokeAll(new ParseTask(from, middle), new ParseTask(middle, to));
+        return;
+      }
+
+      try{
+        parse(from, to);
+      }catch(IOException e){
+        // 内存中的输入不会抛出IOException
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+}
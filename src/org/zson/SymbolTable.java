@@ -0,0 +1,51 @@
+package org.zson;
+
+/**
+ * 解析器使用的键名缓存,相同的键名返回同一个String实例。
+ * 按哈希直接映射到固定大小的槽位,冲突时替换,占用内存有上限
+ *
+ * @author zhou
+ *
+ */
+final class SymbolTable{
+  private static final int SIZE = 512;
+  // 超过此长度的键名不缓存
+  private static final int MAX_LENGTH = 64;
+
+  private final String[] symbols = new String[SIZE];
+
+  /**
+   * 返回与chars[0, length)内容相同的键名
+   *
+   * @param chars
+   * @param length
+   * @return
+   */
+  String lookup(char[] chars, int length){
+    if(length > MAX_LENGTH) return new String(chars, 0, length);
+
+    int hash = 0;
+    for(int i = 0; i < length; i++){
+      hash = 31 * hash + chars[i];
+    }
+
+    int index = (hash ^ (hash >>> 16)) & (SIZE - 1);
+    String symbol = symbols[index];
+    if(symbol != null && matches(symbol, chars, length)) return symbol;
+
+    symbol = new String(chars, 0, length);
+    symbols[index] = symbol;
+    return symbol;
+  }
+
+  private static boolean matches(String symbol, char[] chars, int length){
+    if(symbol.length() != length) return false;
+
+    for(int i = 0; i < length; i++){
+      if(symbol.charAt(i) != chars[i]) return false;
+    }
+
+    return true;
+  }
+
+}
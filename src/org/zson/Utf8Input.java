@@ -0,0 +1,197 @@
+package org.zson;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 直接扫描UTF-8字节,只在读取字符串内容时解码
+ *
+ * @author zhou
+ *
+ */
+final class Utf8Input extends JsonInput{
+  private static final int BUFFER_SIZE = 8192;
+
+  // 为null时buffer即为全部输入
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  // 已从缓冲区中丢弃的字节数
+  private long discarded;
+
+  Utf8Input(byte[] bytes, int offset, int length){
+    this.in = null;
+    this.buffer = bytes;
+    this.position = offset;
+    this.limit = offset + length;
+    this.discarded = -offset;
+  }
+
+  Utf8Input(InputStream in){
+    this.in = in;
+    this.buffer = new byte[BUFFER_SIZE];
+  }
+
+  int peek() throws IOException{
+    while(position < limit || loadMore()){
+      int b = buffer[position] & 0xFF;
+      if(b > ' ') return b;
+
+      position++;
+    }
+
+    return -1;
+  }
+
+  void skip(){
+    position++;
+  }
+
+  void readString(char quote) throws IOException{
+    textLength = 0;
+    while(true){
+      if(position >= limit && !loadMore()) throw error("unterminated string");
+
+      // ASCII直接复制
+      int start = position;
+      while(position < limit){
+        byte b = buffer[position];
+        if(b == quote || b == '\\' || b < 0) break;
+        position++;
+      }
+      appendAscii(start, position);
+      if(position == limit) continue;
+
+      int b = buffer[position];
+      if(b == quote){
+        position++;
+        return;
+      }
+
+      if(b == '\\'){
+        if(!ensure(2)) throw error("unterminated string");
+        position += 2;
+        unescape((char) buffer[position - 1]);
+        continue;
+      }
+
+      decodeMultiByte(b);
+    }
+  }
+
+  void skipString(char quote) throws IOException{
+    while(position < limit || loadMore()){
+      byte b = buffer[position++];
+      if(b == quote) return;
+      if(b == '\\' && position >= limit && !loadMore()) break;
+      if(b == '\\') position++;
+    }
+
+    throw error("unterminated string");
+  }
+
+  void readLiteral() throws IOException{
+    textLength = 0;
+    while(position < limit || loadMore()){
+      int c = buffer[position] & 0xFF;
+      if(isDelimiter(c)) break;
+
+      appendText((char) c);
+      position++;
+    }
+  }
+
+  int nextChar() throws IOException{
+    if(position >= limit && !loadMore()) throw error("unterminated string");
+
+    return buffer[position++] & 0xFF;
+  }
+
+  long position(){
+    return discarded + position;
+  }
+
+  public void close() throws IOException{
+    if(in != null) in.close();
+  }
+
+  private void appendAscii(int start, int end){
+    int length = end - start;
+    if(textLength + length > text.length) growText(length);
+
+    for(int i = start; i < end; i++){
+      text[textLength++] = (char) buffer[i];
+    }
+  }
+
+  private void decodeMultiByte(int lead) throws IOException{
+    int length;
+    int code;
+    if((lead & 0xE0) == 0xC0){
+      length = 2;
+      code = lead & 0x1F;
+    }else if((lead & 0xF0) == 0xE0){
+      length = 3;
+      code = lead & 0x0F;
+    }else if((lead & 0xF8) == 0xF0){
+      length = 4;
+      code = lead & 0x07;
+    }else{
+      throw error("invalid UTF-8 byte 0x" + Integer.toHexString(lead & 0xFF));
+    }
+
+    if(!ensure(length)) throw error("truncated UTF-8 sequence");
+    for(int i = 1; i < length; i++){
+      int next = buffer[position + i];
+      if((next & 0xC0) != 0x80) throw error("invalid UTF-8 sequence");
+      code = (code << 6) | (next & 0x3F);
+    }
+    position += length;
+
+    if(code < 0x10000){
+      appendText((char) code);
+    }else{
+      appendText(Character.highSurrogate(code));
+      appendText(Character.lowSurrogate(code));
+    }
+  }
+
+  /**
+   * 保证缓冲区中至少有count个未读字节
+   *
+   * @param count
+   * @return
+   * @throws IOException
+   */
+  private boolean ensure(int count) throws IOException{
+    while(limit - position < count){
+      if(!loadMore()) return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * 将未读字节移到缓冲区开头并继续读取
+   *
+   * @return
+   * @throws IOException
+   */
+  private boolean loadMore() throws IOException{
+    if(in == null) return false;
+
+    int remain = limit - position;
+    System.arraycopy(buffer, position, buffer, 0, remain);
+    discarded += position;
+    position = 0;
+    limit = remain;
+
+    int count = in.read(buffer, remain, buffer.length - remain);
+    if(count <= 0) return false;
+
+    limit += count;
+    return true;
+  }
+
+}
@@ -0,0 +1,20 @@
+package org.zson;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注的类在编译期由{@link ZsonCodecProcessor}生成{@link JsonCodec}实现,
+ * JsonSerializer和JsonDeserializer会优先使用生成的代码,不再通过反射读写属性
+ *
+ * @author zhou
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ZsonCodec{
+}
@@ -0,0 +1,259 @@
+package org.zson;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * 为标注了{@link ZsonCodec}的类生成{@link JsonCodec}实现,生成的类与目标类在同一个包中,
+ * 属性通过getter(或可访问的属性)读取,通过setter写入
+ *
+ * @author zhou
+ *
+ */
+@SupportedAnnotationTypes("org.zson.ZsonCodec")
+public final class ZsonCodecProcessor extends AbstractProcessor{
+  private static final String EXCLUDE_PACAKGE = "java";
+
+  public SourceVersion getSupportedSourceVersion(){
+    return SourceVersion.latestSupported();
+  }
+
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env){
+    for(Element element : env.getElementsAnnotatedWith(ZsonCodec.class)){
+      if(element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)){
+        error(element, "@ZsonCodec only applies to concrete classes");
+        continue;
+      }
+
+      try{
+        generate((TypeElement) element);
+      }catch(IOException e){
+        error(element, "can't generate codec: " + e.getMessage());
+      }
+    }
+
+    return true;
+  }
+
+  private void generate(TypeElement type) throws IOException{
+    Elements elements = processingEnv.getElementUtils();
+    Types types = processingEnv.getTypeUtils();
+    String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    String codecName = CodecGenerator.compiledName(elements.getBinaryName(type).toString());
+    String simpleName = packageName.length() == 0 ? codecName : codecName.substring(packageName
+        .length() + 1);
+    String beanName = types.erasure(type.asType()).toString();
+
+    List<String> writes = writeStatements(type, packageName);
+    List<String> reads = new ArrayList<String>();
+    List<String> constants = new ArrayList<String>();
+    readStatements(type, reads, constants);
+    if(writes == null || reads == null) return;
+
+    StringBuilder source = new StringBuilder();
+    if(packageName.length() != 0) source.append("package ").append(packageName).append(";\n\n");
+    source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+    source.append("public final class ").append(simpleName).append(" implements org.zson.JsonCodec<")
+        .append(beanName).append(">{\n");
+    for(String constant : constants){
+      source.append("  ").append(constant).append("\n");
+    }
+
+    source.append("\n  public void writeProperties(").append(beanName)
+        .append(" obj, org.zson.JsonCodec.PropertyWriter out) throws java.io.IOException{\n");
+    for(String write : writes){
+      source.append("    ").append(write).append("\n");
+    }
+    source.append("  }\n\n");
+
+    source.append("  public ").append(beanName).append(" newInstance(){\n");
+    source.append("    return new ").append(beanName).append("();\n");
+    source.append("  }\n\n");
+
+    source.append("  public boolean readProperty(").append(beanName)
+        .append(" obj, String name, org.zson.JsonCodec.PropertyReader in) throws java.io.IOException{\n");
+    source.append("    switch(name){\n");
+    for(String read : reads){
+      source.append(read);
+    }
+    source.append("    default:\n      return false;\n    }\n  }\n\n}\n");
+
+    Writer writer = processingEnv.getFiler().createSourceFile(codecName, type).openWriter();
+    try{
+      writer.write(source.toString());
+    }finally{
+      writer.close();
+    }
+  }
+
+  /**
+   * 与运行时一致:子类属性在前,父类属性在后,忽略static/transient属性
+   *
+   * @param type
+   * @param packageName
+   * @return 有属性无法访问时返回null
+   */
+  private List<String> writeStatements(TypeElement type, String packageName){
+    Elements elements = processingEnv.getElementUtils();
+    List<String> writes = new ArrayList<String>();
+    boolean valid = true;
+    for(TypeElement clazz = type; clazz != null && !clazz.getQualifiedName().toString().startsWith(
+        EXCLUDE_PACAKGE); clazz = superclass(clazz)){
+      for(VariableElement field : ElementFilter.fieldsIn(clazz.getEnclosedElements())){
+        Set<Modifier> modifiers = field.getModifiers();
+        if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+
+        String name = field.getSimpleName().toString();
+        String value = null;
+        if(modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.PRIVATE)
+            && elements.getPackageOf(clazz).getQualifiedName().contentEquals(packageName)){
+          value = "obj." + name;
+        }else{
+          ExecutableElement getter = getter(type, field);
+          if(getter != null) value = "obj." + getter.getSimpleName() + "()";
+        }
+
+        if(value == null){
+          error(field, "field " + name + " is not accessible from generated codec, add a public getter");
+          valid = false;
+          continue;
+        }
+
+        writes.add("out." + writeMethod(field.asType()) + "(\"" + name + "\", " + value + ");");
+      }
+    }
+
+    return valid ? writes : null;
+  }
+
+  private void readStatements(TypeElement type, List<String> reads, List<String> constants){
+    Types types = processingEnv.getTypeUtils();
+    DeclaredType declared = (DeclaredType) type.asType();
+    Set<String> properties = new HashSet<String>();
+    for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils()
+        .getAllMembers(type))){
+      String name = method.getSimpleName().toString();
+      Set<Modifier> modifiers = method.getModifiers();
+      if(!name.startsWith("set") || name.length() == 3 || method.getParameters().size() != 1
+          || !modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+          || method.getReturnType().getKind() != TypeKind.VOID) continue;
+
+      String property = Introspector.decapitalize(name.substring(3));
+      // 重载的setter只使用第一个
+      if(!properties.add(property)) continue;
+
+      TypeMirror param = ((ExecutableType) types.asMemberOf(declared, method)).getParameterTypes()
+          .get(0);
+      StringBuilder read = new StringBuilder();
+      read.append("    case \"").append(property).append("\":\n");
+      if(param.getKind().isPrimitive()) read.append("      if(!in.isNull()) ");
+      else
+        read.append("      ");
+      read.append("obj.").append(name).append("(").append(readExpression(param, property, constants))
+          .append(");\n");
+      read.append("      return true;\n");
+      reads.add(read.toString());
+    }
+  }
+
+  private String writeMethod(TypeMirror type){
+    switch(type.getKind()){
+    case INT:
+      return "writeInt";
+    case LONG:
+      return "writeLong";
+    case DOUBLE:
+      return "writeDouble";
+    case BOOLEAN:
+      return "writeBoolean";
+    default:
+      return "writeObject";
+    }
+  }
+
+  private String readExpression(TypeMirror type, String property, List<String> constants){
+    Types types = processingEnv.getTypeUtils();
+    switch(type.getKind()){
+    case INT:
+      return "in.readInt()";
+    case LONG:
+      return "in.readLong()";
+    case DOUBLE:
+      return "in.readDouble()";
+    case BOOLEAN:
+      return "in.readBoolean()";
+    default:
+      break;
+    }
+
+    if(type.getKind().isPrimitive()){
+      String boxed = types.boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName()
+          .toString();
+      return "(" + boxed + ") in.read(" + type + ".class)";
+    }
+
+    String erasure = types.erasure(type).toString();
+    if(type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()){
+      // 泛型类型通过TypeReference保存
+      String constant = "TYPE_" + property;
+      constants.add("private static final java.lang.reflect.Type " + constant
+          + " = ((java.lang.reflect.ParameterizedType) new org.zson.TypeReference<" + type
+          + ">(){}.getType()).getActualTypeArguments()[0];");
+      return "(" + type + ") in.read(" + constant + ")";
+    }
+
+    return "(" + erasure + ") in.read(" + erasure + ".class)";
+  }
+
+  private ExecutableElement getter(TypeElement type, VariableElement field){
+    String name = field.getSimpleName().toString();
+    String capital = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    Types types = processingEnv.getTypeUtils();
+    for(ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils()
+        .getAllMembers(type))){
+      String methodName = method.getSimpleName().toString();
+      if(!methodName.equals("get" + capital) && !methodName.equals("is" + capital)) continue;
+      if(!method.getModifiers().contains(Modifier.PUBLIC) || !method.getParameters().isEmpty()) continue;
+
+      if(types.isSameType(types.erasure(method.getReturnType()), types.erasure(field.asType()))) return method;
+    }
+
+    return null;
+  }
+
+  private TypeElement superclass(TypeElement type){
+    TypeMirror superclass = type.getSuperclass();
+    if(superclass.getKind() != TypeKind.DECLARED) return null;
+
+    return (TypeElement) ((DeclaredType) superclass).asElement();
+  }
+
+  private void error(Element element, String message){
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+}